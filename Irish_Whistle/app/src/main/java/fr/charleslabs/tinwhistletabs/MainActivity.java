@@ -11,6 +11,9 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import androidx.core.content.ContextCompat;
@@ -25,6 +28,7 @@ import fr.charleslabs.tinwhistletabs.android.SheetsAdapter;
 import fr.charleslabs.tinwhistletabs.dialogs.AddCustomSongDialog;
 import fr.charleslabs.tinwhistletabs.dialogs.AppCreditsDialog;
 import fr.charleslabs.tinwhistletabs.dialogs.SessionSearchDialog;
+import fr.charleslabs.tinwhistletabs.music.ABCImporter;
 import fr.charleslabs.tinwhistletabs.music.CustomSongsManager;
 import fr.charleslabs.tinwhistletabs.music.FavoritesManager;
 import fr.charleslabs.tinwhistletabs.music.MusicDB;
@@ -39,6 +43,10 @@ public class MainActivity extends AppCompatActivity  {
     private FavoritesManager favoritesManager;
     private boolean showOnlyFavorites = false;
     private MenuItem favoritesMenuItem;
+    private final ActivityResultLauncher<String[]> importABCLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) importABCFile(uri);
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -135,6 +143,8 @@ public class MainActivity extends AppCompatActivity  {
             startActivity(intent);
         } else if (itemId == R.id.mainAction_searchSession) {
             showSessionSearchDialog();
+        } else if (itemId == R.id.mainAction_importABC) {
+            importABCLauncher.launch(new String[]{"text/*", "application/octet-stream"});
         } else if (itemId == R.id.mainAction_favorites) {
             toggleFavoritesFilter();
         } else if (itemId == R.id.sort_name_asc) {
@@ -303,6 +313,40 @@ public class MainActivity extends AppCompatActivity  {
         dialog.show(getSupportFragmentManager(), "session_search");
     }
     
+    private void importABCFile(Uri uri) {
+        Toast.makeText(this, "Importing ABC file...", Toast.LENGTH_SHORT).show();
+        ABCImporter.importFile(this, uri, new ABCImporter.ImportCallback() {
+            @Override
+            public void onImported(int count, List<String> errors) {
+                if (isFinishing()) return;
+                refreshSongList();
+                
+                StringBuilder message = new StringBuilder("Imported " + count + " tune(s).");
+                if (!errors.isEmpty()) {
+                    message.append("\n\n").append(errors.size()).append(" tune(s) could not be imported:");
+                    // Keep the dialog readable for big books
+                    for (int i = 0; i < Math.min(errors.size(), 50); i++) {
+                        message.append("\n").append(errors.get(i));
+                    }
+                    if (errors.size() > 50) {
+                        message.append("\n...");
+                    }
+                }
+                new AlertDialog.Builder(MainActivity.this)
+                        .setTitle("Import ABC File")
+                        .setMessage(message)
+                        .setPositiveButton("OK", null)
+                        .show();
+            }
+            
+            @Override
+            public void onError(String error) {
+                Toast.makeText(MainActivity.this, "Error importing ABC: " + error,
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+    
     private void showAddSongDialogWithABC(String title, String type, String abc) {
         AddCustomSongDialog dialog = new AddCustomSongDialog(
             (songTitle, author, songType, songAbc, notes, key) -> {
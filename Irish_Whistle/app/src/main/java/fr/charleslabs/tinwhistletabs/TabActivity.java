@@ -5,9 +5,7 @@ import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
-import android.text.Layout;
 import android.text.Spannable;
-import android.text.style.ForegroundColorSpan;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -30,24 +28,34 @@ import androidx.fragment.app.DialogFragment;
 
 import java.util.List;
 
+import fr.charleslabs.tinwhistletabs.android.PlaybackCursor;
+import fr.charleslabs.tinwhistletabs.android.TabHighlighter;
 import fr.charleslabs.tinwhistletabs.android.SingleTapTouchListener;
 import fr.charleslabs.tinwhistletabs.android.TextViewScaleGestureDetector;
 import fr.charleslabs.tinwhistletabs.dialogs.ABCDialog;
 import fr.charleslabs.tinwhistletabs.dialogs.KeyDialog;
 import fr.charleslabs.tinwhistletabs.dialogs.SheetInfoDialog;
 import fr.charleslabs.tinwhistletabs.dialogs.TempoDialog;
+import fr.charleslabs.tinwhistletabs.music.ABCParser;
 import fr.charleslabs.tinwhistletabs.music.CustomSongsManager;
+import fr.charleslabs.tinwhistletabs.music.BeatGrid;
 import fr.charleslabs.tinwhistletabs.music.Metronome;
-import fr.charleslabs.tinwhistletabs.music.MusicDB;
 import fr.charleslabs.tinwhistletabs.music.TrashManager;
+import fr.charleslabs.tinwhistletabs.music.MusicLog;
 import fr.charleslabs.tinwhistletabs.music.MusicNote;
 import fr.charleslabs.tinwhistletabs.music.MusicPlayer;
 import fr.charleslabs.tinwhistletabs.music.MusicSettings;
 import fr.charleslabs.tinwhistletabs.music.MusicSheet;
+import fr.charleslabs.tinwhistletabs.music.PCMCache;
+import fr.charleslabs.tinwhistletabs.music.PlayOrder;
+import fr.charleslabs.tinwhistletabs.music.TabText;
+import fr.charleslabs.tinwhistletabs.music.TimingIndex;
+import fr.charleslabs.tinwhistletabs.music.TuneLoader;
 import fr.charleslabs.tinwhistletabs.utils.AndroidUtils;
 
 public class TabActivity extends AppCompatActivity implements TempoDialog.TempoChangeCallback,
-        KeyDialog.KeyChangeCallback, SingleTapTouchListener.SingleTapCallback {
+        KeyDialog.KeyChangeCallback, SingleTapTouchListener.SingleTapCallback, PlaybackCursor.NoteCallback,
+        TuneLoader.LoadCallback {
     public static final String EXTRA_ABC= "fr.charleslabs.tinwhistletabs.ABC";
     public static final String EXTRA_SHEET_TITLE= "fr.charleslabs.tinwhistletabs.SHEET_TITLE";
     public static final float START_DELAY_AMOUNT = 1.5f; // s
@@ -59,12 +67,21 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     private MusicSheet sheet = null;
     private int tempo = MusicSettings.DEFAULT_TEMPO; // Current tempo in BPM
     private Handler musicHandler = new Handler();
-    private List<MusicNote> notes;
+    private List<MusicNote> notes; // null until loaded
+    private PlayOrder playOrder = null;
+    private List<MusicNote> playedNotes; // notes in play order, repeats expanded
     private int scroll_value = -1;
 
+    // Loading (key and tempo asked to the loader)
+    private String loadKey;
+    private int loadTempo;
+    private int audioLoads = 0; // audio loads asked and not delivered yet, only the last one is played
+    private boolean isTuneSet = false;
+
     // UI elements
     private ScrollView scrollView;
-    private Spannable span = null;
+    private TabHighlighter highlighter = null;
+    private TabText tabs = null;
     private  TextView tab = null;
     private  TextView countdownOverlay = null;
     private WebView sheetMusicView = null;
@@ -74,13 +91,16 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     private ScaleGestureDetector mScaleDetector;
 
     // Cursor
-    private int cursorPos = 0;  // Position in tablature text
-    private int currentNoteIndex = 0;  // Index of current note in notes array
+    private int cursorPos = 0;  // Position in tablature text, on the character of a note
+    private int currentNoteIndex = 0;  // Played note (tab character) to start from, in play order
     private int startCursorPos = 0;  // Start position for highlighting
     private int startNoteIndex = 0;  // Start note index
+    private int playingNoteIndex = -1;  // Note under the cursor while playing, in play order, -1 otherwise
+    private final PlaybackCursor playbackCursor = new PlaybackCursor(this);
     
     // Metronome
     private Metronome metronome = null;
+    private BeatGrid beatGrid = BeatGrid.DEFAULT;
     private boolean isMetronomeEnabled = false;
     private com.google.android.material.floatingactionbutton.FloatingActionButton metronomeBtn;
 
@@ -122,46 +142,22 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         // Add JavaScript interface for note clicks
         sheetMusicView.addJavascriptInterface(new WebAppInterface(), "Android");
         
-        try {
-            android.util.Log.d("TabActivity", "Opening track: " + sheet.getFile());
-            android.util.Log.d("TabActivity", "Track title: " + sheet.getTitle());
-            android.util.Log.d("TabActivity", "Has ABC: " + (sheet.getABC() != null));
-            notes = MusicDB.open(this, sheet.getFile());
-            android.util.Log.d("TabActivity", "Successfully loaded " + notes.size() + " notes");
-        } catch (Exception e) {
-            android.util.Log.e("TabActivity", "Error opening track: " + e.getMessage(), e);
-            Toast.makeText(this, "Error loading track: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            finish();
-        }
         scrollView = findViewById(R.id.TabActivity_tabScrollPane);
-        
-        String tabText = sheet.notesToTabsWithLineBreaks(notes);
-        
-        // LOG: Show tabs on main screen
-        android.util.Log.d("TAB_MAIN_SCREEN", "=== MAIN SCREEN TABS ===");
-        android.util.Log.d("TAB_MAIN_SCREEN", "Tab text length: " + tabText.length());
-        android.util.Log.d("TAB_MAIN_SCREEN", "First 50 chars: " + tabText.substring(0, Math.min(50, tabText.length())));
-        
-        // LOG: Show first 20 characters with their codes
-        int charCount = 0;
-        for (int i = 0; i < tabText.length() && charCount < 20; i++) {
-            char c = tabText.charAt(i);
-            if (c != '\n' && c != ' ') {
-                charCount++;
-                android.util.Log.d("TAB_MAIN_SCREEN", "Char #" + charCount + ": '" + c + "' (code: " + (int)c + ")");
-            }
-        }
-        
-        tab.setText(tabText, TextView.BufferType.SPANNABLE);
-        span = (Spannable)tab.getText();
-        
-        // Load sheet music if ABC is available
-        if (sheet.getABC() != null && !sheet.getABC().isEmpty()) {
-            loadSheetMusic();
-        }
+        highlighter = new TabHighlighter(tab, ContextCompat.getColor(this, R.color.colorAccent));
 
         // Reset tempo to default for each new track
         tempo = MusicSettings.DEFAULT_TEMPO;
+        MusicPlayer.getInstance().setCache(PCMCache.getInstance(getCacheDir()));
+        MusicPlayer.getInstance().configureOutput(this, MusicSettings.isFloatOutput);
+
+        // Load the tune in the background: tabs, then audio, in the current key
+        findViewById(R.id.TabActivity_btnPlayPause).setEnabled(false);
+        findViewById(R.id.TabActivity_btnStop).setEnabled(false);
+        MusicPlayer.getInstance().release();
+        loadKey = MusicSettings.currentKey;
+        loadTempo = tempo;
+        audioLoads++;
+        TuneLoader.load(this, sheet, loadKey, (float) loadTempo / MusicSettings.DEFAULT_TEMPO, this);
 
         // Media buttons
         findViewById(R.id.TabActivity_btnPlayPause).setOnClickListener(new View.OnClickListener() {
@@ -209,18 +205,6 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
                 toggleSheetMusic();
             }
         });
-        
-        // Apply current key transposition if not default
-        if (!MusicSettings.currentKey.equals(MusicSettings.DEFAULT_KEY)) {
-            sheet.transposeKey(notes, MusicSettings.DEFAULT_KEY, MusicSettings.currentKey);
-            
-            // Update tab display with transposed notes
-            tabText = sheet.notesToTabsWithLineBreaks(notes);
-            tab.setText(tabText, TextView.BufferType.SPANNABLE);
-            span = (Spannable)tab.getText();
-        }
-        
-        this.setTune();
 
         // Scale gesture
         mScaleDetector = new ScaleGestureDetector(this, new TextViewScaleGestureDetector(tab));
@@ -228,6 +212,68 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         tab.setOnTouchListener(new SingleTapTouchListener(this));
     }
 
+    @Override
+    public void onTabsLoaded(List<MusicNote> loadedNotes, TabText loadedTabs, PlayOrder loadedPlayOrder,
+                             BeatGrid loadedBeatGrid){
+        // Replaced meanwhile from the ABC dialog
+        if (isDestroyed() || notes != null)
+            return;
+        setNotes(loadedNotes, loadedPlayOrder);
+        beatGrid = loadedBeatGrid;
+        if (loadKey.equals(MusicSettings.currentKey)) {
+            showTabs(loadedTabs);
+        } else {
+            // Key changed while loading
+            sheet.transposeKey(notes, loadKey, MusicSettings.currentKey);
+            showTabs();
+        }
+
+        // Load sheet music if ABC is available
+        if (sheet.getABC() != null && !sheet.getABC().isEmpty()) {
+            loadSheetMusic();
+        }
+
+        if (isMetronomeEnabled) {
+            MusicPlayer.getInstance().setMetronome(beatGrid);
+            metronome.stop();
+            startStandaloneMetronome();
+        }
+    }
+
+    @Override
+    public void onAudioLoaded(MusicPlayer.PreparedTune tune){
+        // Replaced meanwhile by a later load
+        if (--audioLoads > 0 || isDestroyed() || isTuneSet) {
+            tune.release();
+            return;
+        }
+        if (tempo != loadTempo || !MusicSettings.currentKey.equals(loadKey)) {
+            // Tempo or key changed while loading
+            tune.release();
+            setTune();
+            return;
+        }
+        MusicPlayer.getInstance().setStreamingTune(tune);
+        isTuneSet = true;
+        findViewById(R.id.TabActivity_btnPlayPause).setEnabled(true);
+        findViewById(R.id.TabActivity_btnStop).setEnabled(true);
+    }
+
+    @Override
+    public void onLoadError(String error){
+        if (isDestroyed())
+            return;
+        Toast.makeText(this, "Error loading track: " + error, Toast.LENGTH_LONG).show();
+        finish();
+    }
+
+    @Override
+    public void onAudioError(String error){
+        if (--audioLoads > 0 || isDestroyed())
+            return;
+        Toast.makeText(this,getString(R.string.error_tune_generation,error),Toast.LENGTH_SHORT).show();
+    }
+
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.tabAction_key:
@@ -249,19 +295,59 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         return true;
     }
 
+    /**
+     * Load the audio of the notes again, in the current tempo and key, in the background:
+     * playback is back once it is loaded, see onAudioLoaded.
+     */
     private void setTune(){
-        try {
-            // Calculate tempo modifier: higher tempo = faster playback
-            float tempoModifier = (float) tempo / MusicSettings.DEFAULT_TEMPO;
-            MusicPlayer.getInstance().setAudioTrack(MusicPlayer.genMusic(notes, tempoModifier));
-            findViewById(R.id.TabActivity_btnPlayPause).setEnabled(true);
-            findViewById(R.id.TabActivity_btnStop).setEnabled(true);
-        }catch (Exception e){
-            Toast.makeText(this,getString(R.string.error_tune_generation,e.getMessage()),Toast.LENGTH_SHORT).show();
-            findViewById(R.id.TabActivity_btnPlayPause).setEnabled(false);
-            findViewById(R.id.TabActivity_btnStop).setEnabled(false);
+        isTuneSet = false;
+        MusicPlayer.getInstance().release();
+        findViewById(R.id.TabActivity_btnPlayPause).setEnabled(false);
+        findViewById(R.id.TabActivity_btnStop).setEnabled(false);
+
+        // Calculate tempo modifier: higher tempo = faster playback
+        loadKey = MusicSettings.currentKey;
+        loadTempo = tempo;
+        audioLoads++;
+        TuneLoader.loadAudio(sheet.getFile(), loadKey, (float) loadTempo / MusicSettings.DEFAULT_TEMPO,
+                notes, playOrder, this);
+    }
+
+    private String cacheKey(float tempoModifier){
+        return PCMCache.key(sheet.getFile(), MusicSettings.getShift(MusicSettings.currentKey),
+                tempoModifier, MusicPlayer.getInstance().getSampleRate(), playedNotes);
+    }
+
+    /**
+     * @param playOrder order of the notes, the player and the cursor go through the notes in it
+     */
+    private void setNotes(List<MusicNote> notes, PlayOrder playOrder){
+        this.notes = notes;
+        this.playOrder = playOrder;
+        this.playedNotes = playOrder.apply(notes);
+    }
+
+    /**
+     * Apply a tempo or key change. While playing, the audio is re-rendered from the next note
+     * in the background and the cursor keeps going; otherwise the tune is simply reset.
+     */
+    private void updateTune(){
+        // Still loading: the loaded audio is checked against the tempo and key
+        if (!isTuneSet)
+            return;
+        final float tempoModifier = (float) tempo / MusicSettings.DEFAULT_TEMPO;
+        final int nextNoteIndex = playingNoteIndex + 1;
+
+        if (playingNoteIndex >= 0 && nextNoteIndex < playedNotes.size()) {
+            musicHandler.removeCallbacksAndMessages(null);
+            MusicPlayer.getInstance().retune(playedNotes, tempoModifier, nextNoteIndex, cacheKey(tempoModifier));
+            playbackCursor.start(playingNoteIndex, playedNotes.size());
+        } else {
+            this.stop();
+            MusicPlayer.getInstance().retune(playedNotes, tempoModifier, 0, cacheKey(tempoModifier));
         }
     }
+
     private void playPause(){
         com.google.android.material.floatingactionbutton.FloatingActionButton playPauseBtn = 
                 findViewById(R.id.TabActivity_btnPlayPause);
@@ -277,12 +363,21 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
             }
         } else {
             musicHandler.removeCallbacksAndMessages(null);
+            playbackCursor.stop();
+            // Resume from the note being played
+            final TimingIndex timing = MusicPlayer.getInstance().getTiming();
+            if (playingNoteIndex >= 0 && timing != null) {
+                currentNoteIndex = timing.getPlayedBefore(playingNoteIndex);
+                cursorPos = tabs.getStart(playOrder.getNote(playingNoteIndex));
+            }
+            playingNoteIndex = -1;
             MusicPlayer.getInstance().pause();
             countdownOverlay.setVisibility(View.GONE);
             isPlaying = false;
             playPauseBtn.setImageDrawable(ContextCompat.getDrawable(this, android.R.drawable.ic_media_play));
             
             // Metronome continues independently (not stopped on pause)
+            startStandaloneMetronome();
             
             // Disable auto-scroll in WebView
             if (sheetMusicView != null && isSheetMusicVisible) {
@@ -313,18 +408,18 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         startCursorPos = cursorPos;
         startNoteIndex = currentNoteIndex;
         
-        // Calculate tempo modifier to match audio playback
-        float tempoModifier = (float) tempo / MusicSettings.DEFAULT_TEMPO;
-        
-        MusicPlayer.getInstance().move(MusicSheet.noteIndexToTime(notes, currentNoteIndex, tempoModifier));
-        moveCursor(musicHandler, currentNoteIndex);
+        // The cursor then follows the audio, from the note before the one to play
+        final TimingIndex timing = MusicPlayer.getInstance().getTiming();
+        if (timing != null) {
+            MusicPlayer.getInstance().move(timing.getPlayedNoteTime(currentNoteIndex));
+            playingNoteIndex = timing.getPlayedNoteEntry(currentNoteIndex) - 1;
+        }
+        playbackCursor.start(playingNoteIndex, playedNotes.size());
         MusicPlayer.getInstance().play();
         
-        // Restart metronome if enabled to sync with music start
-        if (isMetronomeEnabled && metronome != null) {
-            metronome.stop();  // Stop first to resync
-            // Add small delay (50ms) to compensate for AudioTrack startup latency
-            metronome.start(tempo, 50);  // Start synchronized with music
+        // The clicks are now mixed into the tune by the player
+        if (metronome != null) {
+            metronome.stop();
         }
         
         // Enable auto-scroll in WebView
@@ -340,12 +435,15 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         startCursorPos = 0;
         startNoteIndex = 0;
         scroll_value = -1; // invalidate scroll value
+        playingNoteIndex = -1;
         musicHandler.removeCallbacksAndMessages(null);
-        AndroidUtils.clearSpans(span);
+        playbackCursor.stop();
+        highlighter.clear();
         MusicPlayer.getInstance().stop();
         isPlaying = false;
         
         // Metronome continues independently (not stopped when music stops)
+        startStandaloneMetronome();
         
         // Reset highlighting in WebView and disable auto-scroll
         if (sheetMusicView != null && isSheetMusicVisible) {
@@ -371,9 +469,10 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
                     android.content.res.ColorStateList.valueOf(
                             ContextCompat.getColor(this, android.R.color.white)));
             
-            // Start metronome immediately (works independently of playback)
-            if (metronome != null) {
-                metronome.start(tempo);
+            // Clicks are mixed into the tune while it plays, played on their own otherwise
+            MusicPlayer.getInstance().setMetronome(beatGrid);
+            if (!isPlaying) {
+                startStandaloneMetronome();
             }
             
             Toast.makeText(this, "Metronome enabled", Toast.LENGTH_SHORT).show();
@@ -387,6 +486,7 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
                             ContextCompat.getColor(this, R.color.md_theme_primary)));
             
             // Stop metronome
+            MusicPlayer.getInstance().setMetronome(null);
             if (metronome != null) {
                 metronome.stop();
             }
@@ -395,67 +495,56 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         }
     }
 
-    private void moveCursor(final Handler handler, final int index){
-        if (index >= notes.size()){
-            android.util.Log.d("TabActivity", "moveCursor: reached end, index=" + index + ", notes.size=" + notes.size());
-            stop();
-            return;
+    /**
+     * Play the metronome on its own while the tune is stopped, if enabled and not already playing.
+     */
+    private void startStandaloneMetronome() {
+        if (isMetronomeEnabled && metronome != null && !metronome.isPlaying()) {
+            metronome.start(beatGrid, (float) tempo / MusicSettings.DEFAULT_TEMPO);
         }
+    }
 
-        MusicNote note = notes.get(index);
-        
-        // Calculate tempo modifier to match audio playback
-        float tempoModifier = (float) tempo / MusicSettings.DEFAULT_TEMPO;
-        
-        android.util.Log.v("TabActivity", "moveCursor: index=" + index + ", cursorPos=" + cursorPos + 
-                ", isRest=" + note.isRest() + ", pitch=" + note.getPitch() + 
-                ", duration=" + note.getLengthInMS(tempoModifier) + "ms, tempo=" + tempo);
+    /**
+     * Move the cursor to the note being heard, called by the playback cursor on each new note.
+     */
+    @Override
+    public void onNoteChanged(int index){
+        // Move the cursor in the text tab, rests keep the previous note highlighted
+        final int note = playOrder.getNote(index);
+        if (tabs.isShown(note)) {
+            // Back to the start of a repeat: highlight from there
+            if (tabs.getStart(note) < cursorPos)
+                startCursorPos = tabs.getStart(note);
+            cursorPos = tabs.getStart(note);
+            drawCursor(true);
+        }
+        playingNoteIndex = index;
 
         // Highlight note in sheet music view
-        highlightNoteInSheet(index);
+        highlightNoteInSheet(note);
+    }
 
-        // Move cursor in text tab
-        if(!note.isRest()) {
-            // Find position in text for current note
-            String text = tab.getText().toString();
-            
-            // Skip line breaks and spaces from current position
-            while (cursorPos < text.length() && (text.charAt(cursorPos) == '\n' || text.charAt(cursorPos) == ' ')) {
-                cursorPos++;
-            }
-            
-            drawCursor(true);
-            
-            // Move to next note
-            if (cursorPos < text.length()) {
-                cursorPos++;
-            }
-        }
-        
-        // Wait for next note with correct tempo
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (index < notes.size() - 1)
-                    moveCursor(handler,index+1);
-                else {
-                    android.util.Log.d("TabActivity", "moveCursor: finished playback");
-                    stop();
-                }
-            }
-        }, (long)(note.getLengthInMS(tempoModifier)));
+    @Override
+    public void onPlaybackEnd(){
+        stop();
+    }
+
+    private void showTabs(){
+        showTabs(sheet.getTabs(notes));
+    }
+
+    private void showTabs(TabText tabs){
+        this.tabs = tabs;
+        tab.setText(tabs.getText(), TextView.BufferType.SPANNABLE);
+        highlighter.setText((Spannable)tab.getText());
     }
 
     private void drawCursor(final boolean scroll){
         try {
-                // Clear previous spans
-                AndroidUtils.clearSpans(span);
                 // Highlight all played notes from start position to current
-                span.setSpan(new ForegroundColorSpan(ContextCompat.getColor(this, R.color.colorAccent)),
-                        startCursorPos, cursorPos + 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                final Layout layout = tab.getLayout();
-                final int current_scroll = layout.getLineTop(layout.getLineForOffset(cursorPos));
-                if (scroll && current_scroll != scroll_value) {
+                highlighter.highlight(startCursorPos, cursorPos + 1);
+                final int current_scroll = highlighter.getLineTop(cursorPos);
+                if (scroll && current_scroll >= 0 && current_scroll != scroll_value) {
                     scroll_value = current_scroll;
                     try {
                         ObjectAnimator.ofInt(scrollView, "scrollY",current_scroll)
@@ -478,14 +567,12 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     @Override
     public void tempoChangeCallback(int newTempo, boolean isDelayApplied) {
         if(newTempo != tempo) {
-            this.stop();
             tempo = newTempo;
-            this.setTune();
+            this.updateTune();
             
             // Update metronome tempo if it's running
             if (isMetronomeEnabled && metronome != null && metronome.isPlaying()) {
-                metronome.stop();
-                metronome.start(tempo);
+                metronome.start(beatGrid, (float) tempo / MusicSettings.DEFAULT_TEMPO);
             }
         }
         MusicSettings.isStartDelayed = isDelayApplied;
@@ -493,10 +580,10 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     @Override
     public void keyChangeCallback(String newKey) {
         if(!newKey.equals(MusicSettings.currentKey)) {
-            this.stop();
-            this.sheet.transposeKey(notes, MusicSettings.currentKey, newKey);
+            if (notes != null)
+                this.sheet.transposeKey(notes, MusicSettings.currentKey, newKey);
             MusicSettings.currentKey = newKey;
-            this.setTune();
+            this.updateTune();
         }
     }
     
@@ -504,9 +591,13 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     protected void onDestroy() {
         super.onDestroy();
         // Stop metronome when activity is destroyed
+        MusicPlayer.getInstance().setMetronome(null);
         if (metronome != null) {
-            metronome.stop();
+            metronome.release();
         }
+        final PCMCache cache = PCMCache.getInstance(getCacheDir());
+        MusicLog.d("TabActivity", cache::toString);
+        MusicLog.d("TabActivity", () -> "Metrics:\n" + MusicLog.dumpMetrics());
     }
 
     // Scale tab on pinch
@@ -521,39 +612,29 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
     @Override
     public void singleTapCallback(SingleTapTouchListener origin, View v, MotionEvent event) {
         final int charIndex = AndroidUtils.getCharacterOffset((TextView) v,(int) event.getX(),(int) event.getY());
-        if (charIndex < 0) return;
-        
-        // Convert character position to note index
-        // Count only note characters (skipping line breaks and spaces)
-        String text = ((TextView) v).getText().toString();
-        int noteIndex = 0;
-        
-        // Count notes up to and including charIndex position
-        for (int i = 0; i <= charIndex && i < text.length(); i++) {
-            char c = text.charAt(i);
-            // Skip line breaks and spaces
-            if (c != '\n' && c != ' ') {
-                if (i < charIndex) {
-                    noteIndex++;
-                }
-            }
-        }
+        if (charIndex < 0 || tabs == null) return;
         
-        // Check that index is within notes array bounds
-        if (noteIndex >= notes.size()) {
-            android.util.Log.w("TabActivity", "Note index " + noteIndex + " out of bounds, clamping to " + (notes.size() - 1));
-            noteIndex = notes.size() - 1;
-        }
+        // Note under or after the tapped character, the last one past the end
+        final int note = Math.min(tabs.getNoteAt(charIndex), notes.size() - 1);
+        final TimingIndex timing = MusicPlayer.getInstance().getTiming();
+        final int playedIndex = timing != null ? timing.getPlayedBefore(playOrder.getPosition(note)) : 0;
         
-        android.util.Log.d("TabActivity", "Clicked at charIndex=" + charIndex + ", converted to noteIndex=" + noteIndex);
+        if (MusicLog.isTracing())
+            MusicLog.d("TabActivity", () -> "Clicked at charIndex=" + charIndex + ", converted to note=" + note);
         
         this.stop();
         // Save both positions
-        cursorPos = charIndex;  // Position in text for display
-        currentNoteIndex = noteIndex;  // Note index for playback
-        AndroidUtils.clearSpans(span);
+        cursorPos = tabs.getStart(note);  // Position in text for display
+        currentNoteIndex = playedIndex;  // Played note for playback
         drawCursor(false);
-        MusicPlayer.getInstance().move(MusicSheet.noteIndexToTime(notes, noteIndex, 1.0f));
+        seekToPlayedNote(playedIndex);
+    }
+    
+    private void seekToPlayedNote(int playedIndex) {
+        final TimingIndex timing = MusicPlayer.getInstance().getTiming();
+        if (timing != null) {
+            MusicPlayer.getInstance().move(timing.getPlayedNoteTime(playedIndex));
+        }
     }
 
     // Back capture
@@ -579,27 +660,36 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
             abc, 
             sheet.getFile(),
             isCustomSong,
-            (newNotes) -> {
+            (newAbc, result) -> {
                 // Callback on save - update notes right here
-                reloadNotes(newNotes);
+                reloadNotes(newAbc, result);
             }
         );
         dialog.show(getSupportFragmentManager(), "abc_dialog");
     }
     
-    private void reloadNotes(List<MusicNote> newNotes) {
+    private void reloadNotes(String newAbc, ABCParser.ABCParseResult result) {
         // Stop playback
         stop();
         
-        // Update notes
-        notes = newNotes;
+        // The sheet follows the new ABC: repeats, line breaks, meter and tempo
+        sheet.setABC(newAbc, result.structure);
         
-        // Update tablature display
-        tab.setText(sheet.notesToTabsWithLineBreaks(notes), TextView.BufferType.SPANNABLE);
-        span = (Spannable)tab.getText();
+        // Apply current key, as the loader does
+        sheet.transposeKey(result.notes, MusicSettings.DEFAULT_KEY, MusicSettings.currentKey);
         
-        // Apply current key
-        sheet.transposeKey(notes, sheet.getKey(), MusicSettings.currentKey);
+        // Update notes and tablature display
+        setNotes(result.notes, sheet.getPlayOrder(result.notes));
+        showTabs();
+        loadSheetMusic();
+        
+        // Meter and tempo may have changed
+        beatGrid = BeatGrid.of(sheet.getABC(), sheet.getStructure());
+        if (isMetronomeEnabled) {
+            MusicPlayer.getInstance().setMetronome(beatGrid);
+            metronome.stop();
+            startStandaloneMetronome();
+        }
         
         // Update audio track
         setTune();
@@ -644,20 +734,6 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
         final String tablature = MusicSheet.notesToTabs(notes);
         final String escapedTab = escape(tablature);
         
-        // LOG: Show generated tabs
-        android.util.Log.d("TAB_DEBUG", "=== JAVA TAB GENERATION ===");
-        android.util.Log.d("TAB_DEBUG", "Total notes: " + notes.size());
-        android.util.Log.d("TAB_DEBUG", "Generated tablature length: " + tablature.length());
-        android.util.Log.d("TAB_DEBUG", "First 50 chars: " + tablature.substring(0, Math.min(50, tablature.length())));
-        
-        // LOG: Show first 20 notes with their pitches and tabs
-        for (int i = 0; i < Math.min(20, notes.size()); i++) {
-            MusicNote note = notes.get(i);
-            String tab = note.toTab();
-            android.util.Log.d("TAB_DEBUG", "Note #" + (i+1) + ": pitch=" + note.getPitch() + 
-                    ", tab='" + tab + "' (char code: " + (tab.isEmpty() ? "rest" : (int)tab.charAt(0)) + ")");
-        }
-        
         // Clear cache and history
         sheetMusicView.clearCache(true);
         sheetMusicView.clearHistory();
@@ -718,26 +794,17 @@ public class TabActivity extends AppCompatActivity implements TempoDialog.TempoC
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
-                    android.util.Log.d("TabActivity", "Note clicked in sheet: " + noteIndex);
+                    if (tabs == null || noteIndex >= notes.size())
+                        return;
                     stop();
-                    currentNoteIndex = noteIndex;
-                    
-                    // Convert note index to text position
-                    String text = tab.getText().toString();
-                    int textPos = 0;
-                    int noteCount = 0;
                     
-                    for (int i = 0; i < text.length() && noteCount < noteIndex; i++) {
-                        char c = text.charAt(i);
-                        if (c != '\n' && c != ' ') {
-                            noteCount++;
-                            textPos = i + 1;
-                        }
-                    }
+                    // Written note to text position, and to played note at its first time in play order
+                    cursorPos = tabs.getStart(noteIndex);
+                    final TimingIndex timing = MusicPlayer.getInstance().getTiming();
+                    currentNoteIndex = timing != null ? timing.getPlayedBefore(playOrder.getPosition(noteIndex)) : 0;
                     
-                    cursorPos = textPos;
                     highlightNoteInSheet(noteIndex);
-                    MusicPlayer.getInstance().move(MusicSheet.noteIndexToTime(notes, noteIndex, 1.0f));
+                    seekToPlayedNote(currentNoteIndex);
                 }
             });
         }
@@ -0,0 +1,16 @@
+package fr.charleslabs.tinwhistletabs;
+
+import android.app.Application;
+
+import fr.charleslabs.tinwhistletabs.android.AndroidMusicLogger;
+import fr.charleslabs.tinwhistletabs.music.MusicLog;
+
+public class TinWhistleApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        MusicLog.setLogger(new AndroidMusicLogger());
+        // Traces, counters and timers of the music core in debug builds only
+        MusicLog.setTracing(BuildConfig.DEBUG);
+    }
+}
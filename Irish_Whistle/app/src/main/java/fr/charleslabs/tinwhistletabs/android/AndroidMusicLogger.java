@@ -0,0 +1,17 @@
+package fr.charleslabs.tinwhistletabs.android;
+
+import android.util.Log;
+
+import fr.charleslabs.tinwhistletabs.music.MusicLogger;
+
+/**
+ * Sends the music core logs to logcat.
+ */
+public class AndroidMusicLogger implements MusicLogger {
+    @Override
+    public void log(int priority, String tag, String message, Throwable throwable) {
+        if (throwable != null)
+            message += '\n' + Log.getStackTraceString(throwable);
+        Log.println(priority, tag, message);
+    }
+}
@@ -0,0 +1,71 @@
+package fr.charleslabs.tinwhistletabs.android;
+
+import android.view.Choreographer;
+
+import fr.charleslabs.tinwhistletabs.music.MusicPlayer;
+
+/**
+ * Follows the playback once per display frame: the note being heard is read from the audio track
+ * playback head, and the callback is only called when it changes. Nothing is allocated per frame.
+ * Must be used from the UI thread.
+ */
+public class PlaybackCursor implements Choreographer.FrameCallback {
+    /**
+     * Callback interface.
+     */
+    public interface NoteCallback {
+        void onNoteChanged(int noteIndex);
+        void onPlaybackEnd();
+    }
+
+    private final NoteCallback callback;
+    private boolean isRunning = false;
+    private int noteIndex = -1;
+    private int noteCount = 0;
+
+    public PlaybackCursor(NoteCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Start following the playback.
+     * @param fromNote the note the cursor is currently on, -1 for none
+     * @param noteCount number of notes of the tune
+     */
+    public void start(int fromNote, int noteCount) {
+        this.noteIndex = fromNote;
+        this.noteCount = noteCount;
+        if (!isRunning) {
+            isRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        // Show the first note without waiting for a frame
+        update();
+    }
+
+    public void stop() {
+        if (isRunning) {
+            isRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!isRunning)
+            return;
+        Choreographer.getInstance().postFrameCallback(this);
+        update();
+    }
+
+    private void update() {
+        final int index = MusicPlayer.getInstance().getPlayingNote();
+        if (index < 0 || index >= noteCount) {
+            stop();
+            callback.onPlaybackEnd();
+        } else if (index != noteIndex) {
+            noteIndex = index;
+            callback.onNoteChanged(index);
+        }
+    }
+}
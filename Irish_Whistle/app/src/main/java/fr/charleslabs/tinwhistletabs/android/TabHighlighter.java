@@ -0,0 +1,112 @@
+package fr.charleslabs.tinwhistletabs.android;
+
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.style.ForegroundColorSpan;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Highlights the notes played in the tab text with a single span, moved rather than replaced as
+ * the cursor goes, and gives the top of the line of an offset from a per-line cache rebuilt only
+ * when the text is laid out again (new text, font size or width). Moving to the next note is then
+ * constant time and allocates nothing. Must be used from the UI thread.
+ */
+public class TabHighlighter {
+    private final TextView textView;
+    private final ForegroundColorSpan span;
+    private Spannable text = null;
+    private int start = -1, end = -1; // highlighted range, -1 if none
+
+    // Line cache of layout
+    private Layout layout = null;
+    private int[] lineEnds = new int[0];
+    private int[] lineTops = new int[0];
+    private int lineCount = 0;
+    private int line = 0; // line of the last offset looked up
+
+    public TabHighlighter(@NonNull TextView textView, int color) {
+        this.textView = textView;
+        this.span = new ForegroundColorSpan(color);
+    }
+
+    /**
+     * Follow a new text of the TextView, set with BufferType.SPANNABLE.
+     */
+    public void setText(Spannable text) {
+        this.text = text;
+        this.start = this.end = -1;
+        this.layout = null;
+    }
+
+    /**
+     * Highlight characters from start (inclusive) to end (exclusive), replacing the previous range.
+     */
+    public void highlight(int start, int end) {
+        if (text == null)
+            return;
+        end = Math.min(end, text.length());
+        start = Math.max(0, Math.min(start, end));
+        if (start == this.start && end == this.end)
+            return;
+        // Setting a span already attached only moves it
+        text.setSpan(span, start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        this.start = start;
+        this.end = end;
+    }
+
+    public void clear() {
+        if (text != null && start >= 0)
+            text.removeSpan(span);
+        start = end = -1;
+    }
+
+    /**
+     * @return the top of the line of an offset, in pixels, -1 if the text is not laid out yet
+     */
+    public int getLineTop(int offset) {
+        if (!updateLayout())
+            return -1;
+        // The cursor mostly moves forward by a character: walk from the last line, search otherwise
+        if (line > 0 && offset < lineEnds[line - 1]) {
+            int low = 0, high = line - 1;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (lineEnds[middle] > offset)
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            line = low;
+        } else {
+            while (line < lineCount - 1 && offset >= lineEnds[line])
+                line++;
+        }
+        return lineTops[line];
+    }
+
+    /**
+     * Rebuild the line cache if the TextView was laid out again.
+     * @return false if there is no layout
+     */
+    private boolean updateLayout() {
+        final Layout current = textView.getLayout();
+        if (current == null || current.getLineCount() == 0)
+            return false;
+        if (current == layout && current.getLineCount() == lineCount)
+            return true;
+        layout = current;
+        lineCount = current.getLineCount();
+        if (lineEnds.length < lineCount) {
+            lineEnds = new int[lineCount];
+            lineTops = new int[lineCount];
+        }
+        for (int i = 0; i < lineCount; ++i) {
+            lineEnds[i] = current.getLineEnd(i);
+            lineTops[i] = current.getLineTop(i);
+        }
+        line = 0;
+        return true;
+    }
+}
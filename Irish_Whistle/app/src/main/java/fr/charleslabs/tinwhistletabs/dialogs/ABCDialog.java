@@ -16,12 +16,9 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
-import java.util.List;
-
 import fr.charleslabs.tinwhistletabs.R;
 import fr.charleslabs.tinwhistletabs.music.ABCParser;
 import fr.charleslabs.tinwhistletabs.music.CustomSongsManager;
-import fr.charleslabs.tinwhistletabs.music.MusicNote;
 
 public class ABCDialog extends DialogFragment {
     
@@ -30,9 +27,13 @@ public class ABCDialog extends DialogFragment {
     private final String filename;
     private final boolean isCustomSong;
     private final SaveCallback callback;
+    private ABCPreviewWatcher previewWatcher;
     
     public interface SaveCallback {
-        void onABCSaved(List<MusicNote> newNotes);
+        /**
+         * @param result parse of the new ABC, its notes in the default key
+         */
+        void onABCSaved(String newAbc, ABCParser.ABCParseResult result);
     }
     
     public ABCDialog(String title, String abc, String filename, boolean isCustomSong, SaveCallback callback) {
@@ -54,11 +55,14 @@ public class ABCDialog extends DialogFragment {
         EditText abcView = view.findViewById(R.id.dialog_abc_content);
         Button copyButton = view.findViewById(R.id.dialog_abc_copy);
         Button saveButton = view.findViewById(R.id.dialog_abc_save);
+        TextView statusView = view.findViewById(R.id.dialog_abc_status);
+        TextView previewView = view.findViewById(R.id.dialog_abc_preview);
         
         titleView.setText(title);
         
         if (abc != null && !abc.isEmpty()) {
             abcView.setText(abc);
+            previewWatcher = new ABCPreviewWatcher(abcView, statusView, previewView);
         } else {
             abcView.setText("ABC notation not available for this song.");
             abcView.setEnabled(false);
@@ -100,8 +104,8 @@ public class ABCDialog extends DialogFragment {
     
     private void saveABC(String newAbc) {
         try {
-            // Parse new ABC notation
-            ABCParser.ABCParseResult result = ABCParser.parse(newAbc);
+            // Already parsed while editing
+            ABCParser.ABCParseResult result = previewWatcher.getParser().getResult();
             
             if (result.notes.isEmpty()) {
                 Toast.makeText(getContext(), "No notes found in ABC notation", 
@@ -115,7 +119,7 @@ public class ABCDialog extends DialogFragment {
             
             // Вызываем callback с новыми нотами
             if (callback != null) {
-                callback.onABCSaved(result.notes);
+                callback.onABCSaved(newAbc, result);
             }
             
             dismiss();
@@ -0,0 +1,62 @@
+package fr.charleslabs.tinwhistletabs.dialogs;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import fr.charleslabs.tinwhistletabs.music.IncrementalABCParser;
+
+/**
+ * Parses the ABC of an EditText as it is edited, and shows the note count (or the first error)
+ * and the tabs of the line being edited.
+ */
+class ABCPreviewWatcher implements TextWatcher {
+    private static final int ERROR_COLOR = 0xFFC62828;
+
+    private final IncrementalABCParser parser = new IncrementalABCParser();
+    private final EditText input;
+    private final TextView status;
+    private final TextView preview;
+    private final int statusColor;
+
+    ABCPreviewWatcher(EditText input, TextView status, TextView preview) {
+        this.input = input;
+        this.status = status;
+        this.preview = preview;
+        this.statusColor = status.getCurrentTextColor();
+
+        parser.setText(input.getText());
+        update();
+        input.addTextChangedListener(this);
+    }
+
+    IncrementalABCParser getParser() {
+        return parser;
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        parser.edit(s, start, before, count);
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+        update();
+    }
+
+    private void update() {
+        final String error = parser.getError();
+        if (error != null) {
+            status.setText(error);
+            status.setTextColor(ERROR_COLOR);
+        } else {
+            status.setText(parser.getNoteCount() + " notes");
+            status.setTextColor(statusColor);
+        }
+        preview.setText(parser.getTabs(parser.getLineAt(Math.max(input.getSelectionStart(), 0))));
+    }
+}
@@ -14,6 +14,7 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Spinner;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -21,11 +22,10 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import fr.charleslabs.tinwhistletabs.R;
 import fr.charleslabs.tinwhistletabs.music.ABCParser;
+import fr.charleslabs.tinwhistletabs.music.CustomSongsManager;
 import fr.charleslabs.tinwhistletabs.music.MusicNote;
 
 public class AddCustomSongDialog extends DialogFragment {
@@ -34,6 +34,7 @@ public class AddCustomSongDialog extends DialogFragment {
     private EditText authorInput;
     private Spinner typeSpinner;
     private EditText abcInput;
+    private ABCPreviewWatcher previewWatcher;
     private AddSongCallback callback;
     private boolean titleManuallyEdited = false;
     
@@ -56,6 +57,9 @@ public class AddCustomSongDialog extends DialogFragment {
         authorInput = view.findViewById(R.id.dialog_author_input);
         typeSpinner = view.findViewById(R.id.dialog_type_spinner);
         abcInput = view.findViewById(R.id.dialog_abc_input);
+        previewWatcher = new ABCPreviewWatcher(abcInput,
+                (TextView) view.findViewById(R.id.dialog_abc_status),
+                (TextView) view.findViewById(R.id.dialog_abc_preview));
         
         // Setup spinner with tune types
         String[] types = {"Reel", "Jig", "Hornpipe", "Polka", "Slide", "Waltz", 
@@ -82,7 +86,7 @@ public class AddCustomSongDialog extends DialogFragment {
             public void afterTextChanged(Editable s) {}
         });
         
-        // Auto-fill title and type from ABC notation
+        // Auto-fill title and type from ABC notation, once the preview watcher has parsed it
         abcInput.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
@@ -92,19 +96,18 @@ public class AddCustomSongDialog extends DialogFragment {
             
             @Override
             public void afterTextChanged(Editable s) {
-                String abc = s.toString();
-                
                 // Only auto-fill title if it hasn't been manually edited
                 if (!titleManuallyEdited) {
-                    String extractedTitle = extractTitleFromABC(abc);
-                    if (extractedTitle != null && !extractedTitle.isEmpty()) {
+                    String extractedTitle = previewWatcher.getParser().getHeader('T');
+                    if (extractedTitle != null && !extractedTitle.isEmpty()
+                            && !extractedTitle.equals(titleInput.getText().toString())) {
                         titleInput.setText(extractedTitle);
                         titleManuallyEdited = false; // Reset flag after auto-fill
                     }
                 }
                 
                 // Auto-fill type from R: header
-                String extractedType = extractTypeFromABC(abc);
+                String extractedType = CustomSongsManager.typeFromRhythm(previewWatcher.getParser().getHeader('R'));
                 if (extractedType != null && !extractedType.isEmpty()) {
                     setSpinnerValue(typeSpinner, extractedType);
                 }
@@ -155,57 +158,6 @@ public class AddCustomSongDialog extends DialogFragment {
         return dialog;
     }
     
-    /**
-     * Extract title from ABC notation (T: header)
-     */
-    private String extractTitleFromABC(String abc) {
-        if (abc == null || abc.isEmpty()) {
-            return null;
-        }
-        
-        // Look for T: header (title)
-        Pattern pattern = Pattern.compile("^T:\\s*(.+)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(abc);
-        
-        if (matcher.find()) {
-            return matcher.group(1).trim();
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Extract type/rhythm from ABC notation (R: header)
-     */
-    private String extractTypeFromABC(String abc) {
-        if (abc == null || abc.isEmpty()) {
-            return null;
-        }
-        
-        // Look for R: header (rhythm/type)
-        Pattern pattern = Pattern.compile("^R:\\s*(.+)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(abc);
-        
-        if (matcher.find()) {
-            String rhythm = matcher.group(1).trim().toLowerCase();
-            
-            // Map rhythm to our type names
-            if (rhythm.contains("reel")) return "Reel";
-            if (rhythm.contains("jig") && !rhythm.contains("slip")) return "Jig";
-            if (rhythm.contains("slip") && rhythm.contains("jig")) return "Slip Jig";
-            if (rhythm.contains("hornpipe")) return "Hornpipe";
-            if (rhythm.contains("polka")) return "Polka";
-            if (rhythm.contains("slide")) return "Slide";
-            if (rhythm.contains("waltz")) return "Waltz";
-            if (rhythm.contains("march")) return "March";
-            if (rhythm.contains("song")) return "Song";
-            
-            return "Misc.";
-        }
-        
-        return null;
-    }
-    
     /**
      * Set spinner value by matching string
      */
@@ -234,9 +186,9 @@ public class AddCustomSongDialog extends DialogFragment {
             return false;
         }
         
-        // Parse ABC notation
+        // ABC notation is parsed incrementally while editing
         try {
-            ABCParser.ABCParseResult result = ABCParser.parse(abc);
+            ABCParser.ABCParseResult result = previewWatcher.getParser().getResult();
             
             if (result.notes.isEmpty()) {
                 Toast.makeText(getContext(), "No notes found in ABC notation", Toast.LENGTH_SHORT).show();
@@ -0,0 +1,82 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Import of the tunes of an ABC file (a single tune or a whole tune book) as custom songs.
+ * Reading, parsing and saving are done in the background, the result is posted to the UI thread.
+ */
+public class ABCImporter {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface ImportCallback {
+        /**
+         * @param errors one line per tune that could not be imported
+         */
+        void onImported(int count, List<String> errors);
+        void onError(String error);
+    }
+
+    public static void importFile(Context context, final Uri uri, final ImportCallback callback) {
+        final Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            try {
+                final String book = readText(appContext, uri);
+
+                // Leave a core to the UI thread
+                final int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+                final List<ABCBookParser.Tune> tunes = ABCBookParser.parse(book, parallelism);
+                if (tunes.isEmpty())
+                    throw new IOException("No tunes found in file");
+
+                final List<CustomSongsManager.NewSong> songs = new ArrayList<>(tunes.size());
+                final List<String> errors = new ArrayList<>();
+                for (ABCBookParser.Tune tune : tunes) {
+                    if (tune.error != null) {
+                        errors.add(tune.getName() + ": " + tune.error);
+                        continue;
+                    }
+                    final String type = CustomSongsManager.typeFromRhythm(tune.rhythm);
+                    songs.add(new CustomSongsManager.NewSong(tune.getName(), tune.composer,
+                            type != null ? type : "Misc.", tune.abc.trim(), tune.result.notes, tune.result.key));
+                }
+
+                // Single write of the song list
+                if (!songs.isEmpty())
+                    new CustomSongsManager(appContext).addSongs(songs);
+
+                mainHandler.post(() -> callback.onImported(songs.size(), errors));
+            } catch (Exception e) {
+                mainHandler.post(() -> callback.onError(e.getMessage()));
+            }
+        });
+    }
+
+    private static String readText(Context context, Uri uri) throws IOException {
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null)
+                throw new IOException("Cannot open " + uri);
+            final Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            final StringBuilder text = new StringBuilder();
+            final char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) > 0)
+                text.append(buffer, 0, read);
+            return text.toString();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class CustomSongsManager {
@@ -26,42 +27,92 @@ public class CustomSongsManager {
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
     
+    /**
+     * A song to add, as entered or imported
+     */
+    public static class NewSong {
+        public final String title, author, type, abc, key;
+        public final List<MusicNote> notes;
+        
+        public NewSong(String title, String author, String type, String abc, List<MusicNote> notes, String key) {
+            this.title = title;
+            this.author = author;
+            this.type = type;
+            this.abc = abc;
+            this.notes = notes;
+            this.key = key;
+        }
+    }
+    
     public void addSong(String title, String author, String type, String abc, 
                        List<MusicNote> notes, String key) throws IOException, JSONException {
-        
-        // Generate unique filename
-        String filename = "custom_" + System.currentTimeMillis();
-        
-        // Save notes to file
-        saveNotesToFile(filename, notes);
+        addSongs(Collections.singletonList(new NewSong(title, author, type, abc, notes, key)));
+    }
+    
+    /**
+     * Add several songs at once: the song list is read and written a single time.
+     * Blocking, call it from a background thread for large imports.
+     */
+    public void addSongs(List<NewSong> newSongs) throws IOException, JSONException {
+        // Generate unique filenames
+        final long time = System.currentTimeMillis();
         
         // Get current song list
         JSONArray songsArray = getSongsArray();
         
-        // Convert key from ABC format to project format
-        String convertedKey = convertABCKeyToProjectKey(key);
-        
-        // Create new entry
-        JSONObject songObject = new JSONObject();
-        songObject.put("title", title);
-        songObject.put("type", type);
-        songObject.put("file", filename);
-        songObject.put("abc", abc);
-        songObject.put("key", convertedKey);
-        songObject.put("whistle", "D");
-        songObject.put("custom", true);
-        
-        if (author != null && !author.isEmpty()) {
-            songObject.put("author", author);
+        for (int i = 0; i < newSongs.size(); i++) {
+            NewSong song = newSongs.get(i);
+            String filename = newSongs.size() == 1 ? "custom_" + time : "custom_" + time + "_" + i;
+            
+            // Save notes to file
+            saveNotesToFile(filename, song.notes);
+            
+            // Create new entry
+            JSONObject songObject = new JSONObject();
+            songObject.put("title", song.title);
+            songObject.put("type", song.type);
+            songObject.put("file", filename);
+            songObject.put("abc", song.abc);
+            // Convert key from ABC format to project format
+            songObject.put("key", convertABCKeyToProjectKey(song.key));
+            songObject.put("whistle", "D");
+            songObject.put("custom", true);
+            
+            if (song.author != null && !song.author.isEmpty()) {
+                songObject.put("author", song.author);
+            }
+            
+            // Add to list
+            songsArray.put(songObject);
         }
         
-        // Add to list
-        songsArray.put(songObject);
-        
         // Save updated list
         prefs.edit().putString(KEY_SONGS, songsArray.toString()).apply();
     }
     
+    /**
+     * Map an ABC rhythm (R: header) to our type names
+     * @return the type, or null if there is no rhythm
+     */
+    public static String typeFromRhythm(String rhythm) {
+        if (rhythm == null || rhythm.isEmpty()) {
+            return null;
+        }
+        rhythm = rhythm.toLowerCase();
+        
+        if (rhythm.contains("reel")) return "Reel";
+        if (rhythm.contains("jig") && !rhythm.contains("slip")) return "Jig";
+        if (rhythm.contains("slip") && rhythm.contains("jig")) return "Slip Jig";
+        if (rhythm.contains("hornpipe")) return "Hornpipe";
+        if (rhythm.contains("polka")) return "Polka";
+        if (rhythm.contains("slide")) return "Slide";
+        if (rhythm.contains("waltz")) return "Waltz";
+        if (rhythm.contains("march")) return "March";
+        if (rhythm.contains("song")) return "Song";
+        
+        return "Misc.";
+    }
+    
     private String convertABCKeyToProjectKey(String abcKey) {
         // Convert ABC keys (D, G, A, etc.) to project format (High D, High G, etc.)
         if (abcKey == null || abcKey.isEmpty()) {
@@ -170,13 +221,15 @@ public class CustomSongsManager {
             dir.mkdirs();
         }
         
-        // Format notes string as pitch/duration,pitch/duration,...
+        // Format notes string as pitch/ticks/tick length,pitch/ticks/tick length,...
         StringBuilder content = new StringBuilder();
         for (int i = 0; i < notes.size(); i++) {
             MusicNote note = notes.get(i);
             content.append(note.getPitch())
                    .append("/")
-                   .append((int)note.getLengthInMS(1.0f));
+                   .append(note.getTicks())
+                   .append("/")
+                   .append(note.getTickMs());
             
             if (i < notes.size() - 1) {
                 content.append(",");
@@ -3,146 +3,164 @@ package fr.charleslabs.tinwhistletabs.music;
 import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.media.AudioTrack;
-import android.os.Handler;
+
+import java.util.Arrays;
 
 /**
- * Simple metronome that plays click sounds at specified tempo
+ * Metronome playing on its own, while the tune is not: clicks are rendered by a {@link BeatTrack}
+ * at the player output rate, by one feeder thread, into a single streaming track, both kept until
+ * {@link #release()}. While the tune plays, the clicks are mixed into it instead
+ * (see {@link MusicPlayer#setMetronome}).
  */
 public class Metronome {
-    private static final int SAMPLE_RATE = 22050;
-    private static final int CLICK_DURATION_MS = 50;
-    
-    private AudioTrack audioTrack;
-    private Handler handler;
-    private Runnable clickRunnable;
-    private boolean isPlaying = false;
-    private int tempo = MusicSettings.DEFAULT_TEMPO;
-    
-    public Metronome() {
-        handler = new Handler();
-    }
-    
+    private static final int BLOCK_SIZE = 1024; // samples
+
+    private AudioTrack audioTrack = null;
+    private Thread feeder = null;
+
+    // Shared with the feeder, guarded by lock
+    private final Object lock = new Object();
+    private BeatTrack beats = null;
+    private volatile boolean isPlaying = false;
+    private boolean isWriting = false; // a block is being rendered or written
+    private boolean isReleased = false;
+
     /**
-     * Start metronome at specified tempo
-     * @param tempo BPM (beats per minute)
+     * Start the metronome, from the first beat of a bar.
+     * @param grid beats of the tune
+     * @param tempoModifier tempo relative to the tune's Q: tempo
      */
-    public void start(int tempo) {
-        start(tempo, 0);
+    public void start(BeatGrid grid, float tempoModifier) {
+        stop();
+
+        // At the rate of the tunes, so that the clicks sound the same mixed in or alone
+        final int sampleRate = MusicPlayer.getInstance().getSampleRate();
+        if (audioTrack != null && audioTrack.getSampleRate() != sampleRate) {
+            audioTrack.release();
+            audioTrack = null;
+        }
+        if (audioTrack == null) {
+            final int minBufferSize = AudioTrack.getMinBufferSize(
+                    sampleRate,
+                    AudioFormat.CHANNEL_OUT_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            audioTrack = new AudioTrack(
+                    AudioManager.STREAM_MUSIC,
+                    sampleRate,
+                    AudioFormat.CHANNEL_OUT_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBufferSize, 2*2*BLOCK_SIZE),
+                    AudioTrack.MODE_STREAM);
+        }
+
+        synchronized (lock) {
+            beats = new BeatTrack(grid, tempoModifier, sampleRate);
+            isPlaying = true;
+            isReleased = false;
+            lock.notifyAll();
+        }
+        if (feeder == null) {
+            feeder = new Thread(this::feed, "Metronome-feeder");
+            feeder.setDaemon(true);
+            feeder.start();
+        }
+        try {
+            audioTrack.play();
+        } catch (Exception e) {
+            MusicLog.e("Metronome", "Error playing clicks", e);
+        }
     }
-    
+
     /**
-     * Start metronome at specified tempo with initial delay
-     * @param tempo BPM (beats per minute)
-     * @param initialDelayMs delay before first click in milliseconds
+     * Feeder thread: render the clicks into the track while playing, wait otherwise.
+     * AudioTrack.write blocks while the track buffer is full, which paces the loop.
      */
-    public void start(int tempo, long initialDelayMs) {
-        if (isPlaying) {
-            stop();
-        }
-        
-        this.tempo = tempo;
-        isPlaying = true;
-        
-        // Generate click sound
-        final byte[] clickSound = generateClickSound();
-        
-        // Calculate interval between clicks in milliseconds
-        // 60000 ms per minute / BPM = ms per beat
-        final long intervalMs = 60000 / tempo;
-        
-        clickRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (isPlaying) {
-                    playClick(clickSound);
-                    handler.postDelayed(this, intervalMs);
+    private void feed() {
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_AUDIO);
+        final short[] pcm = new short[BLOCK_SIZE];
+        BeatTrack current = null;
+        long position = 0;
+        while (true) {
+            final AudioTrack track;
+            final BeatTrack next;
+            synchronized (lock) {
+                isWriting = false;
+                lock.notifyAll();
+                while (!isPlaying) {
+                    if (isReleased)
+                        return;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                isWriting = true;
+                track = audioTrack;
+                next = beats;
+            }
+            // Started again: from the first beat
+            if (next != current) {
+                current = next;
+                position = 0;
+            }
+
+            Arrays.fill(pcm, (short) 0);
+            current.mix(pcm, position, pcm.length);
+            if (track.write(pcm, 0, pcm.length) < 0) {
+                synchronized (lock) {
+                    isPlaying = false;
                 }
             }
-        };
-        
-        // Start with optional initial delay
-        if (initialDelayMs > 0) {
-            handler.postDelayed(clickRunnable, initialDelayMs);
-        } else {
-            handler.post(clickRunnable);
+            position += pcm.length;
         }
     }
-    
+
     /**
      * Stop metronome
      */
     public void stop() {
-        isPlaying = false;
-        if (handler != null && clickRunnable != null) {
-            handler.removeCallbacks(clickRunnable);
+        synchronized (lock) {
+            if (!isPlaying && !isWriting)
+                return;
+            isPlaying = false;
+        }
+        // Unblock a pending write, then drop the clicks queued
+        audioTrack.pause();
+        audioTrack.flush();
+        synchronized (lock) {
+            while (isWriting) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        audioTrack.flush();
+    }
+
+    /**
+     * Stop metronome, end its feeder and free its track.
+     */
+    public void release() {
+        stop();
+        synchronized (lock) {
+            isReleased = true;
+            lock.notifyAll();
         }
+        feeder = null;
         if (audioTrack != null) {
-            audioTrack.stop();
             audioTrack.release();
             audioTrack = null;
         }
     }
-    
+
     /**
      * Check if metronome is playing
      */
     public boolean isPlaying() {
         return isPlaying;
     }
-    
-    /**
-     * Generate a short click sound
-     */
-    private byte[] generateClickSound() {
-        int numSamples = (CLICK_DURATION_MS * SAMPLE_RATE) / 1000;
-        byte[] sound = new byte[numSamples * 2]; // 16-bit = 2 bytes per sample
-        
-        // Generate a short beep at 1000 Hz
-        double frequency = 1000.0;
-        
-        for (int i = 0; i < numSamples; i++) {
-            // Generate sine wave with envelope (fade out)
-            double envelope = 1.0 - ((double) i / numSamples);
-            double sample = Math.sin(2.0 * Math.PI * i * frequency / SAMPLE_RATE) * envelope;
-            
-            // Convert to 16-bit PCM
-            short val = (short) (sample * 32767 * 0.3); // 30% volume
-            
-            // Little endian
-            sound[i * 2] = (byte) (val & 0xff);
-            sound[i * 2 + 1] = (byte) ((val >> 8) & 0xff);
-        }
-        
-        return sound;
-    }
-    
-    /**
-     * Play a single click sound
-     */
-    private void playClick(byte[] clickSound) {
-        try {
-            if (audioTrack != null) {
-                audioTrack.stop();
-                audioTrack.release();
-            }
-            
-            int bufferSize = AudioTrack.getMinBufferSize(
-                    SAMPLE_RATE,
-                    AudioFormat.CHANNEL_OUT_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT);
-            
-            audioTrack = new AudioTrack(
-                    AudioManager.STREAM_MUSIC,
-                    SAMPLE_RATE,
-                    AudioFormat.CHANNEL_OUT_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT,
-                    Math.max(bufferSize, clickSound.length),
-                    AudioTrack.MODE_STATIC);
-            
-            audioTrack.write(clickSound, 0, clickSound.length);
-            audioTrack.play();
-        } catch (Exception e) {
-            android.util.Log.e("Metronome", "Error playing click: " + e.getMessage());
-        }
-    }
 }
@@ -5,15 +5,23 @@ import android.content.Context;
 import org.json.JSONArray;
 import org.json.JSONException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import fr.charleslabs.tinwhistletabs.BuildConfig;
 import fr.charleslabs.tinwhistletabs.R;
 import fr.charleslabs.tinwhistletabs.utils.Utils;
 
 public class MusicDB {
+    private static final String NOTE_INDEX_FILE = "notes.idx";
+
     public List<MusicSheet> musicDB = new ArrayList<>();
+    private final Map<String, MusicSheet> sheetsByFile = new HashMap<>();
+    private NoteIndex noteIndex = null;
 
     //Singleton
     private static MusicDB instance;
@@ -30,15 +38,25 @@ public class MusicDB {
             JSONArray jsonSheets = new JSONArray(fileContent);
 
             for (int i=0; i < jsonSheets.length(); i++) {
-                musicDB.add(new MusicSheet(jsonSheets.getJSONObject(i)));
+                final MusicSheet sheet = new MusicSheet(jsonSheets.getJSONObject(i));
+                musicDB.add(sheet);
+                sheetsByFile.put(sheet.getFile(), sheet);
             }
+
+            noteIndex = new NoteIndex(new File(c.getFilesDir(), NOTE_INDEX_FILE),
+                    BuildConfig.VERSION_CODE, fileContent.hashCode());
+            noteIndex.loadAsync(new ArrayList<>(musicDB));
         } catch (IOException | JSONException e) {
             e.printStackTrace();
         }
     }
 
-    public static List<MusicNote> open(Context c, String filename) throws IOException {
-        android.util.Log.d("MusicDB", "Opening file: " + filename);
+    /**
+     * @return the notes of a tune; built-in tunes set their structure on the sheet, from the index or the parse
+     */
+    public static List<MusicNote> open(Context c, MusicSheet sheet) throws IOException {
+        final String filename = sheet.getFile();
+        MusicLog.d("MusicDB", () -> "Opening file: " + filename);
         
         if (filename.startsWith("custom_")) {
             // Custom track - read from file
@@ -55,29 +73,35 @@ public class MusicDB {
             
             for (String note : notesArray){
                 final String[] split = note.split("/");
-                notes.add(new MusicNote(Integer.parseInt(split[0]),Integer.parseInt(split[1])));
+                // pitch/ticks/tick length, or pitch/duration in ms for songs saved by older versions
+                if (split.length > 2)
+                    notes.add(new MusicNote(Integer.parseInt(split[0]), Integer.parseInt(split[1]),
+                            Double.parseDouble(split[2])));
+                else
+                    notes.add(new MusicNote(Integer.parseInt(split[0]),Integer.parseInt(split[1])));
             }
             
             return notes;
         } else if (filename.startsWith("builtin_")) {
-            // Built-in track - search for ABC in database
-            android.util.Log.d("MusicDB", "Looking for builtin track in database, total tracks: " + getInstance(c).musicDB.size());
-            
-            for (MusicSheet sheet : getInstance(c).musicDB) {
-                android.util.Log.d("MusicDB", "Checking sheet: " + sheet.getFile() + " (title: " + sheet.getTitle() + ")");
-                if (filename.equals(sheet.getFile())) {
-                    android.util.Log.d("MusicDB", "Found matching sheet, ABC length: " + (sheet.getABC() != null ? sheet.getABC().length() : "null"));
-                    try {
-                        ABCParser.ABCParseResult result = ABCParser.parse(sheet.getABC());
-                        android.util.Log.d("MusicDB", "Successfully parsed ABC, notes count: " + result.notes.size());
-                        return result.notes;
-                    } catch (Exception e) {
-                        android.util.Log.e("MusicDB", "Failed to parse ABC", e);
-                        throw new IOException("Failed to parse ABC notation for " + filename + ": " + e.getMessage());
-                    }
-                }
+            // Built-in track - pre-parsed notes and structure from the index, or parse the ABC if not indexed yet
+            final MusicDB db = getInstance(c);
+            if (db.noteIndex != null) {
+                final List<MusicNote> notes = db.noteIndex.open(sheet);
+                if (notes != null)
+                    return notes;
+            }
+
+            if (!db.sheetsByFile.containsKey(filename))
+                throw new IOException("Built-in track not found: " + filename);
+            try {
+                ABCParser.ABCParseResult result = ABCParser.parse(sheet.getABC());
+                sheet.setStructure(result.structure);
+                MusicLog.d("MusicDB", () -> "Parsed ABC (not indexed yet), notes count: " + result.notes.size());
+                return result.notes;
+            } catch (Exception e) {
+                MusicLog.e("MusicDB", "Failed to parse ABC", e);
+                throw new IOException("Failed to parse ABC notation for " + filename + ": " + e.getMessage());
             }
-            throw new IOException("Built-in track not found: " + filename);
         } else {
             throw new IOException("Unknown track type: " + filename);
         }
@@ -1,21 +1,84 @@
 package fr.charleslabs.tinwhistletabs.music;
 
+import android.content.Context;
+import android.media.AudioAttributes;
 import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.media.AudioTimestamp;
 import android.media.AudioTrack;
 import android.media.audiofx.PresetReverb;
+import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 
 import java.util.List;
 
-import fr.charleslabs.tinwhistletabs.music.synth.TinWhistleSynth;
-
+/**
+ * Player of the tunes. Commands (play, pause, seek, loop, tune changes) are queued to a control
+ * thread owning the track, so that they never block the UI nor start a thread, and run in the
+ * order given. A feeder thread, started once, renders the streamed tune into the track.
+ * What the UI reads back (timing, note being heard) is up to date as soon as a command returns.
+ */
 public class MusicPlayer {
-    private static final int SAMPLE_RATE = 22050;
+    private static final int DEFAULT_SAMPLE_RATE = 22050;
+    private static final int STREAM_BLOCK_SIZE = 2048; // samples, rounded to whole device buffers
+    private static final int LATENCY_POLL_MS = 2, LATENCY_TIMEOUT_MS = 1000;
+
+    // Output, see configureOutput
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+    private volatile int blockSize = STREAM_BLOCK_SIZE;
+    private volatile boolean isFloatOutput = false;
+
+    // Control thread, owns the track: written there only
+    private final Handler control;
+    private volatile AudioTrack audioTrack = null;
+    private volatile int latencyMs = -1;
+
+    // Streaming mode
+    private volatile MusicRenderer renderer = null;
+    private volatile TimingIndex timing = null; // of the last tune given, for the UI
+    private PCMCache cache = null;
+    private volatile BeatGrid metronome = null;
+
+    // Feeder thread, renders while feeding and waits otherwise
+    private final Object feedLock = new Object();
+    private boolean isFeeding = false; // guarded by feedLock
+    private boolean isWriting = false; // a block is being rendered or written, guarded by feedLock
 
-    // Internal states
-    private AudioTrack audioTrack = null;
-    private final Handler handler = new Handler();
+    /**
+     * Maps the track playback head to the tune: head frame headBase plays sample sampleBase of the
+     * tune, timed by timing, going back to loopStart at loopEnd. Replaced whenever the track is
+     * flushed or the tune swapped. A headBase of -1 stands for a seek not done yet: the tune is
+     * then at sampleBase.
+     */
+    private static final class Clock {
+        final TimingIndex timing;
+        final int sampleBase;
+        final int headBase;
+        final int loopStart, loopEnd;
+
+        Clock(TimingIndex timing, int sampleBase, int headBase) {
+            this(timing, sampleBase, headBase, -1, -1);
+        }
+
+        Clock(TimingIndex timing, int sampleBase, int headBase, int loopStart, int loopEnd) {
+            this.timing = timing;
+            this.sampleBase = sampleBase;
+            this.headBase = headBase;
+            this.loopStart = loopStart;
+            this.loopEnd = loopEnd;
+        }
+
+        int getSample(int head) {
+            if (headBase < 0)
+                return sampleBase;
+            final int sample = sampleBase + (head - headBase);
+            if (loopEnd < 0 || sampleBase > loopEnd || sample < loopEnd)
+                return sample;
+            return loopStart + (sample - loopEnd) % (loopEnd - loopStart);
+        }
+    }
+    private volatile Clock clock = null;
 
     //Singleton
     private static MusicPlayer instance;
@@ -25,150 +88,570 @@ public class MusicPlayer {
         }
         return instance;
     }
-    private MusicPlayer(){}
-
-    public static byte[] genMusic(List<MusicNote> notes, float tempoModifier){
-        // Compute length of music
-        float lengthInS = 0;
-        for(MusicNote note : notes) {
-            lengthInS += note.getLengthInS(tempoModifier);
-        }
+    private MusicPlayer(){
+        final HandlerThread controlThread = new HandlerThread("MusicPlayer-control",
+                android.os.Process.THREAD_PRIORITY_AUDIO);
+        controlThread.start();
+        control = new Handler(controlThread.getLooper());
 
-        final float[] music = new float[(int)(lengthInS*SAMPLE_RATE)];
-        int index = 0;
-        for(MusicNote note : notes) {
-            index += genNote(note,tempoModifier,music,index);
-        }
+        final Thread feeder = new Thread(this::feed, "MusicPlayer-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
 
-        TinWhistleSynth.reverb(music, (int)(SAMPLE_RATE*0.1f), 0.2f);
-        TinWhistleSynth.reverb(music, (int)(SAMPLE_RATE*0.2f), 0.1f);
-        TinWhistleSynth.reverb(music, (int)(SAMPLE_RATE*0.3f), 0.05f);
-        TinWhistleSynth.reverb(music, (int)(SAMPLE_RATE*0.4f), 0.05f);
+    /**
+     * Run a command on the control thread, after the ones queued before.
+     */
+    private void command(final String name, final Runnable command){
+        final long queueTime = MusicLog.startTimer();
+        control.post(() -> {
+            MusicLog.stopTimer("player.queue", queueTime, 1);
+            try {
+                command.run();
+            } catch (Exception e) {
+                MusicLog.e("MusicPlayer", "Error in " + name, e);
+            }
+        });
+    }
 
-        return toneToBytePCM(music);
+    /**
+     * Cache used to replay tunes already rendered by the streaming mode (null to disable).
+     */
+    public void setCache(PCMCache cache){
+        this.cache = cache;
     }
 
-    private static int genNote(MusicNote note, float tempoModifier, float[] music, int offset){
-        int numSamples = (int)(note.getLengthInS(tempoModifier)*SAMPLE_RATE);
+    /**
+     * Render at the output sample rate of the device, in blocks of whole device buffers, so that
+     * streamed tunes skip resampling and may take the fast mixer path. Tunes prepared before keep
+     * their rate.
+     * @param floatOutput stream float samples rather than 16 bit PCM
+     */
+    public void configureOutput(Context context, boolean floatOutput){
+        final AudioManager manager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        final int rate = parseProperty(manager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE));
+        final int frames = parseProperty(manager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER));
+        sampleRate = rate > 0 ? rate : DEFAULT_SAMPLE_RATE;
+        blockSize = frames > 0 ? Math.max(1, STREAM_BLOCK_SIZE / frames) * frames : STREAM_BLOCK_SIZE;
+        isFloatOutput = floatOutput;
+        MusicLog.d("MusicPlayer", () -> "Output: " + sampleRate + " Hz, blocks of " + blockSize
+                + (floatOutput ? " float" : " 16 bit") + " samples");
+    }
 
-        if (numSamples+offset >= music.length -1)
-            numSamples = music.length - offset -1;
+    private static int parseProperty(String value){
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-        if (note.isRest())
-            for (int i = 0; i < numSamples; ++i)
-                music[i+offset] = 0;
-        else
-            TinWhistleSynth.genNote(note.getFrequency(),numSamples,music,offset,SAMPLE_RATE);
+    /**
+     * @return the sample rate tunes are rendered at
+     */
+    public int getSampleRate(){
+        return sampleRate;
+    }
 
-        return numSamples;
+    public short[] genMusic(List<MusicNote> notes, float tempoModifier){
+        return MusicRenderer.genMusic(notes, tempoModifier, sampleRate);
     }
 
     // Media controls: set, play, pause, stop, clear
-    public void setAudioTrack(byte[] generatedSnd){
-        if(audioTrack != null){
-            audioTrack.stop();
-            audioTrack.flush();
-            audioTrack.release();
-        }
-        
+    public void setAudioTrack(final short[] generatedSnd){
+        timing = null;
+        clock = null;
+        command("setAudioTrack", () -> setStaticTrack(generatedSnd));
+    }
+
+    private void setStaticTrack(short[] generatedSnd){
+        releaseAudioTrack();
+
         // Получаем минимальный размер буфера
+        final int sampleRate = this.sampleRate;
         int minBufferSize = AudioTrack.getMinBufferSize(
-                SAMPLE_RATE,
+                sampleRate,
                 AudioFormat.CHANNEL_OUT_MONO,
                 AudioFormat.ENCODING_PCM_16BIT);
         
-        // Используем максимум из минимального размера и размера данных
-        int bufferSize = Math.max(minBufferSize, generatedSnd.length);
+        // Используем максимум из минимального размера и размера данных (в байтах)
+        int bufferSize = Math.max(minBufferSize, 2 * generatedSnd.length);
         
-        android.util.Log.d("MusicPlayer", "Creating AudioTrack: dataSize=" + generatedSnd.length + 
+        MusicLog.d("MusicPlayer", () -> "Creating AudioTrack: dataSize=" + generatedSnd.length +
                 ", minBufferSize=" + minBufferSize + ", bufferSize=" + bufferSize);
         
-        audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC,
-                SAMPLE_RATE, AudioFormat.CHANNEL_OUT_MONO,
-                AudioFormat.ENCODING_PCM_16BIT, bufferSize,
-                AudioTrack.MODE_STATIC);
+        audioTrack = createTrack(sampleRate, AudioFormat.ENCODING_PCM_16BIT, bufferSize, AudioTrack.MODE_STATIC);
+
+        applyPresetReverb();
+
+        int written = audioTrack.write(generatedSnd, 0, generatedSnd.length);
+        MusicLog.d("MusicPlayer", () -> "Written " + written + " samples to AudioTrack");
+        
+        if (written != generatedSnd.length) {
+            MusicLog.w("MusicPlayer", "Warning: not all data written to AudioTrack");
+        }
+    }
+
+    /**
+     * A tune ready to be streamed, see {@link #prepareStreamingTune}.
+     */
+    public static final class PreparedTune {
+        private final MusicRenderer renderer;
+        private final AudioTrack track;
+
+        private PreparedTune(MusicRenderer renderer, AudioTrack track) {
+            this.renderer = renderer;
+            this.track = track;
+        }
+
+        /**
+         * Free a tune that will not be played.
+         */
+        public void release() {
+            track.release();
+        }
+    }
+
+    /**
+     * Build the renderer and track of a tune for streaming playback, reading it from the PCM cache
+     * if it is there: notes are synthesized block by block while playing, so playback starts
+     * immediately and memory stays bounded whatever the tune length. This reads the disk: run it
+     * on a background thread ({@link TuneLoader}), the player is left untouched. The tune is then
+     * played with {@link #setStreamingTune(PreparedTune)}.
+     * @param cacheKey key of the tune in the PCM cache (see {@link PCMCache#key}), or null
+     */
+    public PreparedTune prepareStreamingTune(List<MusicNote> notes, float tempoModifier, String cacheKey){
+        final int sampleRate = this.sampleRate;
+        final MusicRenderer renderer = new MusicRenderer(notes, tempoModifier, sampleRate, cache, cacheKey);
+        renderer.loadCache();
+
+        final int encoding = isFloatOutput ? AudioFormat.ENCODING_PCM_FLOAT : AudioFormat.ENCODING_PCM_16BIT;
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO, encoding);
+
+        // Two blocks, so that one is rendered while the other plays
+        final int bytesPerSample = isFloatOutput ? 4 : 2;
+        final AudioTrack track = createTrack(sampleRate, encoding,
+                Math.max(minBufferSize, 2*bytesPerSample*blockSize), AudioTrack.MODE_STREAM);
+        return new PreparedTune(renderer, track);
+    }
+
+    /**
+     * Mono music track. Streaming tracks ask for the low latency (fast mixer) path where
+     * available, which is granted to tracks at the device sample rate.
+     */
+    private static AudioTrack createTrack(int sampleRate, int encoding, int bufferSize, int mode){
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setSampleRate(sampleRate)
+                            .setEncoding(encoding)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                            .build())
+                    .setBufferSizeInBytes(bufferSize)
+                    .setTransferMode(mode)
+                    .setPerformanceMode(mode == AudioTrack.MODE_STREAM
+                            ? AudioTrack.PERFORMANCE_MODE_LOW_LATENCY : AudioTrack.PERFORMANCE_MODE_NONE)
+                    .build();
+        }
+        return new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                encoding, bufferSize, mode);
+    }
+
+    /**
+     * Replace the current tune by a prepared one, stopped at its start.
+     */
+    public void setStreamingTune(final PreparedTune tune){
+        timing = tune.renderer.getTiming();
+        clock = new Clock(timing, 0, -1);
+        command("setStreamingTune", () -> {
+            releaseAudioTrack();
+
+            attachMetronome(tune.renderer);
+            audioTrack = tune.track;
+            renderer = tune.renderer;
+            clock = new Clock(renderer.getTiming(), 0, 0);
+
+            applyPresetReverb();
+        });
+    }
+
+    /**
+     * Stop and forget the current tune, e.g. while the next one is loading.
+     */
+    public void release(){
+        timing = null;
+        clock = null;
+        command("release", () -> {
+            releaseAudioTrack();
+            clock = null;
+        });
+    }
+
+    /**
+     * Swap the streamed tune (e.g. after a tempo or key change) without stopping playback.
+     * Only the notes from noteIndex onward are rendered again, on the feeder thread; audio
+     * already queued with the old settings is dropped when the new renderer is picked up.
+     * Nothing is done without a tune.
+     */
+    public void retune(List<MusicNote> notes, float tempoModifier, int noteIndex, String cacheKey){
+        final TimingIndex tuneTiming = timing;
+        if (tuneTiming == null)
+            return;
+        // Same rate as the track it is streamed into
+        final MusicRenderer next = new MusicRenderer(notes, tempoModifier, tuneTiming.getSampleRate(), cache, cacheKey);
+        next.seekToNote(noteIndex);
+        timing = next.getTiming();
+        command("retune", () -> {
+            if (renderer == null)
+                return;
+            final MusicRenderer current = renderer;
+            if (current != null && current.getLoopEnd() >= 0)
+                next.setLoop(current.getTiming().getNoteAt(current.getLoopStart()),
+                        current.getTiming().getNoteAt(current.getLoopEnd()));
+            attachMetronome(next);
+            renderer = next;
+        });
+    }
+
+    /**
+     * Mix metronome clicks following grid into the streamed tune, at its tempo, or stop them (null).
+     * Audio already queued in the track is played as it is.
+     */
+    public void setMetronome(BeatGrid grid){
+        metronome = grid;
+        command("setMetronome", () -> {
+            final MusicRenderer renderer = this.renderer;
+            if (renderer != null)
+                attachMetronome(renderer);
+        });
+    }
+
+    private void attachMetronome(MusicRenderer renderer){
+        final BeatGrid grid = metronome;
+        renderer.setBeats(grid != null ? new BeatTrack(grid, renderer.getTempoModifier(), renderer.getTiming()) : null);
+    }
 
-        // PRESET
+    private void applyPresetReverb(){
+        // Fast tracks take no effects: the synth reverb alone then
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && audioTrack.getPerformanceMode() == AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+            return;
         try {
             final PresetReverb reverb = new PresetReverb(0, audioTrack.getAudioSessionId());
             reverb.setPreset(PresetReverb.PRESET_SMALLROOM);
             reverb.setEnabled(true);
             audioTrack.setAuxEffectSendLevel(1.0f);
         }catch (Exception ignored){}
+    }
 
-        int written = audioTrack.write(generatedSnd, 0, generatedSnd.length);
-        android.util.Log.d("MusicPlayer", "Written " + written + " bytes to AudioTrack");
-        
-        if (written != generatedSnd.length) {
-            android.util.Log.w("MusicPlayer", "Warning: not all data written to AudioTrack");
+    private void releaseAudioTrack(){
+        stopFeeding();
+        renderer = null;
+        if(audioTrack != null){
+            audioTrack.stop();
+            audioTrack.flush();
+            audioTrack.release();
+            audioTrack = null;
         }
     }
 
-    public void play() {
-        Thread thread = new Thread(new Runnable() {
-            public void run() {
-                handler.post(new Runnable() {
-                    public void run() {
-                        if (audioTrack != null) {
-                            try {
-                                int state = audioTrack.getState();
-                                if (state == AudioTrack.STATE_INITIALIZED) {
-                                    audioTrack.play();
-                                } else {
-                                    android.util.Log.e("MusicPlayer", "AudioTrack not initialized, state: " + state);
-                                }
-                            } catch (Exception e) {
-                                android.util.Log.e("MusicPlayer", "Error playing audio", e);
-                            }
-                        }
-                    }
-                });
+    /**
+     * Let the feeder render the tune into the streaming track.
+     */
+    private void startFeeding(){
+        synchronized (feedLock) {
+            isFeeding = true;
+            feedLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stop the feeder and drop whatever it queued: once this returns, it no longer touches the
+     * renderer nor the track.
+     */
+    private void stopFeeding(){
+        final AudioTrack track = audioTrack;
+        synchronized (feedLock) {
+            if (!isFeeding && !isWriting)
+                return;
+            isFeeding = false;
+        }
+        // Unblock a pending write, then drop whatever the feeder queued before leaving. Under the
+        // lock of a retune swap, so that the feeder cannot restart the track afterwards
+        if (track != null) {
+            synchronized (this) {
+                track.pause();
+                track.flush();
             }
-        });
-        thread.start();
+        }
+        synchronized (feedLock) {
+            while (isWriting) {
+                try {
+                    feedLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (track != null)
+            track.flush();
     }
 
-    public void pause() {
-        if (audioTrack != null){
-            audioTrack.pause();
+    /**
+     * Feeder thread: render the tune into the streaming track while feeding, block after block.
+     * AudioTrack.write blocks while the track buffer is full (or paused), which paces the rendering.
+     */
+    private void feed(){
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_AUDIO);
+        AudioTrack bufferTrack = null;
+        short[] pcm = null;
+        float[] pcmFloat = null;
+        MusicRenderer current = null;
+        while (true) {
+            final AudioTrack track;
+            synchronized (feedLock) {
+                isWriting = false;
+                feedLock.notifyAll();
+                while (!isFeeding) {
+                    try {
+                        feedLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                isWriting = true;
+                track = audioTrack;
+            }
+            final MusicRenderer next = renderer;
+            if (track == null || next == null) {
+                synchronized (feedLock) {
+                    isFeeding = false;
+                }
+                continue;
+            }
+
+            // Buffers follow the track format, set once per tune
+            final boolean isFloat = track.getAudioFormat() == AudioFormat.ENCODING_PCM_FLOAT;
+            if (track != bufferTrack) {
+                bufferTrack = track;
+                pcm = isFloat ? null : new short[blockSize];
+                pcmFloat = isFloat ? new float[blockSize] : null;
+                current = next;
+            }
+
+            // Tune swapped by retune(): drop the audio queued with the old settings
+            if (next != current) {
+                current = next;
+                synchronized (MusicPlayer.this) {
+                    final boolean wasPlaying = track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+                    track.pause();
+                    track.flush();
+                    resetClock(current);
+                    final boolean isStillFeeding;
+                    synchronized (feedLock) {
+                        isStillFeeding = isFeeding;
+                    }
+                    if (wasPlaying && isStillFeeding)
+                        track.play();
+                }
+            }
+
+            final int count = isFloat ? current.renderPCM(pcmFloat) : current.renderPCM(pcm);
+            final int written = count <= 0 ? -1 : isFloat ? track.write(pcmFloat, 0, count, AudioTrack.WRITE_BLOCKING)
+                    : track.write(pcm, 0, count);
+            if (written < 0) {
+                // End of the tune, or track gone
+                synchronized (feedLock) {
+                    isFeeding = false;
+                }
+            }
         }
     }
 
-    public void stop() {
-        if (audioTrack != null)
-            audioTrack.stop();
+    private void resetClock(MusicRenderer renderer){
+        clock = new Clock(renderer.getTiming(), renderer.getPosition(), audioTrack.getPlaybackHeadPosition(),
+                renderer.getLoopStart(), renderer.getLoopEnd());
     }
 
-    public void move(float time) {
-        if (audioTrack != null)
-            audioTrack.setPlaybackHeadPosition((int)(time*SAMPLE_RATE));
+    /**
+     * @return the timing of the current tune, for seeking, or null if there is none
+     */
+    public TimingIndex getTiming(){
+        return timing;
     }
 
-    private static byte[] toneToBytePCM(double[] tone){
-        final byte[] generatedSnd = new byte[tone.length * 2];
-        // convert to 16 bit pcm sound array
-        // assumes the sample buffer is normalised.
-        int idx = 0;
-        for (double dVal : tone) {
-            short val = (short) (dVal * 32767);
-            generatedSnd[idx++] = (byte) (val & 0x00ff);
-            generatedSnd[idx++] = (byte) ((val & 0xff00) >>> 8);
-        }
+    /**
+     * @return the last time measured from a play command to its first sample reaching the output,
+     * in ms, -1 if not measured yet
+     */
+    public int getLatencyMs(){
+        return latencyMs;
+    }
+
+    /**
+     * @return the sample of the tune being heard, according to the track playback head
+     */
+    public int getPlaybackSample(){
+        final Clock clock = this.clock;
+        final AudioTrack track = audioTrack;
+        if (clock == null)
+            return 0;
+        if (clock.headBase < 0)
+            return clock.sampleBase;
+        return track != null ? clock.getSample(track.getPlaybackHeadPosition()) : 0;
+    }
 
-        return generatedSnd;
+    /**
+     * @return the index of the note being heard, the note count once the tune is over, -1 without a tune
+     */
+    public int getPlayingNote(){
+        final Clock clock = this.clock;
+        return clock != null ? clock.timing.getNoteAt(getPlaybackSample()) : -1;
     }
 
-    private static byte[] toneToBytePCM(float[] tone){
-        final byte[] generatedSnd = new byte[tone.length * 2];
-        // convert to 16 bit pcm sound array
-        // assumes the sample buffer is normalised.
-        int idx = 0;
-        for (float dVal : tone) {
-            short val = (short) (dVal * 32767);
-            generatedSnd[idx++] = (byte) (val & 0x00ff);
-            generatedSnd[idx++] = (byte) ((val & 0xff00) >>> 8);
+    public void play() {
+        final long commandTime = System.nanoTime();
+        command("play", () -> {
+            final AudioTrack track = audioTrack;
+            if (track == null)
+                return;
+            final int state = track.getState();
+            if (state != AudioTrack.STATE_INITIALIZED) {
+                MusicLog.e("MusicPlayer", "AudioTrack not initialized, state: " + state, null);
+                return;
+            }
+            final int head;
+            synchronized (this) {
+                if (renderer != null)
+                    startFeeding();
+                head = track.getPlaybackHeadPosition();
+                track.play();
+            }
+            control.postDelayed(new LatencyProbe(track, head, commandTime), LATENCY_POLL_MS);
+        });
+    }
+
+    /**
+     * Measures the time from a play command to the sound: polls the track timestamp until the
+     * frame after the playback head at play time is presented, then dates that frame.
+     */
+    private final class LatencyProbe implements Runnable {
+        private final AudioTrack track;
+        private final int head;
+        private final long commandTime;
+        private final AudioTimestamp timestamp = new AudioTimestamp();
+
+        LatencyProbe(AudioTrack track, int head, long commandTime) {
+            this.track = track;
+            this.head = head;
+            this.commandTime = commandTime;
+        }
+
+        @Override
+        public void run() {
+            if (track != audioTrack || track.getPlayState() != AudioTrack.PLAYSTATE_PLAYING)
+                return;
+            if (!track.getTimestamp(timestamp) || timestamp.framePosition <= head) {
+                if (System.nanoTime() - commandTime < LATENCY_TIMEOUT_MS * 1_000_000L)
+                    control.postDelayed(this, LATENCY_POLL_MS);
+                return;
+            }
+            final long soundTime = timestamp.nanoTime
+                    - (timestamp.framePosition - head) * 1_000_000_000L / track.getSampleRate();
+            latencyMs = (int) ((soundTime - commandTime) / 1_000_000L);
+            MusicLog.addTime("player.latency", soundTime - commandTime, 1);
+            if (MusicLog.isTracing()) {
+                final int latency = latencyMs;
+                MusicLog.d("MusicPlayer", () -> "Play to sound: " + latency + " ms");
+            }
         }
+    }
 
-        return generatedSnd;
+    public void pause() {
+        command("pause", () -> {
+            synchronized (this) {
+                if (audioTrack != null)
+                    audioTrack.pause();
+            }
+        });
+    }
+
+    public void stop() {
+        final TimingIndex timing = this.timing;
+        if (timing != null)
+            clock = new Clock(timing, 0, -1);
+        command("stop", () -> {
+            final MusicRenderer renderer = this.renderer;
+            if (renderer != null) {
+                stopFeeding();
+                renderer.seek(0);
+                resetClock(renderer);
+            } else if (audioTrack != null)
+                audioTrack.stop();
+        });
+    }
+
+    /**
+     * Seek to a time of the tune. A streamed tune is left paused there; a static one carries on
+     * playing if it was.
+     */
+    public void move(final float time) {
+        final TimingIndex timing = this.timing;
+        if (timing != null)
+            clock = new Clock(timing, Math.min(Math.max(0, (int)(time*timing.getSampleRate())),
+                    timing.getTotalSamples()), -1);
+        command("move", () -> {
+            final MusicRenderer renderer = this.renderer;
+            final AudioTrack track = audioTrack;
+            if (renderer != null) {
+                stopFeeding();
+                renderer.seek(time);
+                resetClock(renderer);
+            } else if (track != null) {
+                // The head only moves on a paused or stopped track
+                final boolean wasPlaying = track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+                track.pause();
+                track.setPlaybackHeadPosition((int)(time*track.getSampleRate()));
+                if (wasPlaying)
+                    track.play();
+            }
+        });
+    }
+
+    /**
+     * Loop notes fromNote to toNote (excluded) of the tune, or stop looping (fromNote -1).
+     * A streamed tune playing carries on from the note being heard, or from the loop start if
+     * that note is past the loop.
+     */
+    public void setLoop(final int fromNote, final int toNote) {
+        command("setLoop", () -> {
+            final MusicRenderer renderer = this.renderer;
+            final AudioTrack track = audioTrack;
+            if (track == null)
+                return;
+            // Static tracks carry no timing to place the loop with
+            if (renderer == null)
+                return;
+
+            final boolean wasPlaying = track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+            final int heard = getPlaybackSample();
+            stopFeeding();
+            renderer.setLoop(fromNote, toNote);
+            final TimingIndex timing = renderer.getTiming();
+            final int loopStart = renderer.getLoopStart(), loopEnd = renderer.getLoopEnd();
+            final int note = loopEnd >= 0 && (heard >= loopEnd || heard < loopStart)
+                    ? timing.getNoteAt(loopStart) : timing.getNoteAt(heard);
+            renderer.seekToNote(note);
+            resetClock(renderer);
+            if (wasPlaying) {
+                startFeeding();
+                track.play();
+            }
+        });
     }
 }
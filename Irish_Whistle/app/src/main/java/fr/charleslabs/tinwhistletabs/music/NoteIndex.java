@@ -0,0 +1,200 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Binary index of the built-in tunes notes and structure, so that opening a tune does not parse its ABC.
+ * It is built from db.json in the background on first launch, and again whenever the database
+ * or the app version changes. File layout (big endian):
+ * <pre>
+ *   header:    magic, format version, app version code, db.json hash, tune count
+ *   directory: per tune, file name (UTF-8, short length), data offset, note, line and bar counts
+ *   data:      per tune, pitches (1 byte each), lengths (ticks, 4 bytes each)
+ *              then tick lengths (ms, 8 byte doubles), line ends (4 bytes each)
+ *              then bar notes, bar flags and bar endings (4 bytes each)
+ * </pre>
+ * The file is memory-mapped: opening a tune is a map lookup plus a read of its arrays.
+ */
+public class NoteIndex {
+    private static final int MAGIC = 0x54574E49; // "TWNI"
+    private static final int FORMAT_VERSION = 4;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final File file;
+    private final int appVersion;
+    private final int dbHash;
+
+    // Set once the index is loaded
+    private volatile Map<String, int[]> directory = null; // file -> {offset, note, line and bar counts}
+    private volatile ByteBuffer data = null;
+
+    NoteIndex(File file, int appVersion, int dbHash) {
+        this.file = file;
+        this.appVersion = appVersion;
+        this.dbHash = dbHash;
+    }
+
+    /**
+     * Map the index file, rebuilding it first if it is missing or out of date. Runs in the background.
+     */
+    void loadAsync(final List<MusicSheet> sheets) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!load()) {
+                        build(sheets);
+                        if (!load())
+                            MusicLog.w("NoteIndex", "Index rebuilt but could not be loaded");
+                    }
+                } catch (IOException e) {
+                    MusicLog.w("NoteIndex", "Failed to load note index: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the notes of a built-in tune, its structure set on the sheet, or null if the index
+     * is not ready or does not contain it
+     */
+    List<MusicNote> open(MusicSheet sheet) {
+        final Map<String, int[]> directory = this.directory;
+        if (directory == null)
+            return null;
+        final int[] entry = directory.get(sheet.getFile());
+        if (entry == null)
+            return null;
+
+        final ByteBuffer buffer = data.duplicate();
+        final int offset = entry[0], count = entry[1], lines = entry[2], bars = entry[3];
+        final List<MusicNote> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            notes.add(new MusicNote(buffer.get(offset + i) & 0xFF, buffer.getInt(offset + count + 4 * i),
+                    buffer.getDouble(offset + 5 * count + 8 * i)));
+
+        final ABCStructure.Builder structure = new ABCStructure.Builder();
+        final int lineOffset = offset + 13 * count, barOffset = lineOffset + 4 * lines;
+        for (int i = 0; i < lines; ++i)
+            structure.endLine(buffer.getInt(lineOffset + 4 * i));
+        for (int i = 0; i < bars; ++i) {
+            final int note = buffer.getInt(barOffset + 4 * i);
+            structure.addBar(note, buffer.getInt(barOffset + 4 * (bars + i)));
+            final int ending = buffer.getInt(barOffset + 4 * (2 * bars + i));
+            if (ending != 0)
+                structure.addEnding(note, ending);
+        }
+        sheet.setStructure(structure.build());
+        return notes;
+    }
+
+    boolean load() throws IOException {
+        if (!file.exists())
+            return false;
+
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                || buffer.getInt() != appVersion || buffer.getInt() != dbHash)
+            return false;
+
+        final int tunes = buffer.getInt();
+        final Map<String, int[]> directory = new HashMap<>(2 * tunes);
+        for (int i = 0; i < tunes; ++i) {
+            final byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            directory.put(new String(name, StandardCharsets.UTF_8),
+                    new int[]{buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()});
+        }
+
+        this.data = buffer;
+        this.directory = directory;
+        return true;
+    }
+
+    void build(List<MusicSheet> sheets) throws IOException {
+        final long start = System.currentTimeMillis();
+
+        // Parse every tune once
+        final List<String> names = new ArrayList<>();
+        final List<ABCParser.ABCParseResult> tunes = new ArrayList<>();
+        int directorySize = 0;
+        for (MusicSheet sheet : sheets) {
+            if (sheet.getABC() == null || sheet.getABC().isEmpty())
+                continue;
+            try {
+                tunes.add(ABCParser.parse(sheet.getABC()));
+                names.add(sheet.getFile());
+                directorySize += 2 + sheet.getFile().getBytes(StandardCharsets.UTF_8).length + 4 * 4;
+            } catch (Exception e) {
+                MusicLog.w("NoteIndex", "Skipping " + sheet.getFile() + ": " + e.getMessage());
+            }
+        }
+
+        // Write to a temporary file, then swap
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(appVersion);
+            out.writeInt(dbHash);
+            out.writeInt(tunes.size());
+
+            int offset = HEADER_SIZE + directorySize;
+            for (int i = 0; i < tunes.size(); ++i) {
+                final byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                final ABCStructure structure = tunes.get(i).structure;
+                out.writeInt(offset);
+                out.writeInt(tunes.get(i).notes.size());
+                out.writeInt(structure.getLineCount());
+                out.writeInt(structure.getBarCount());
+                offset += 13 * tunes.get(i).notes.size() + 4 * structure.getLineCount()
+                        + 12 * structure.getBarCount();
+            }
+            for (ABCParser.ABCParseResult tune : tunes) {
+                for (MusicNote note : tune.notes)
+                    out.writeByte(note.getPitch());
+                for (MusicNote note : tune.notes)
+                    out.writeInt(note.getTicks());
+                for (MusicNote note : tune.notes)
+                    out.writeDouble(note.getTickMs());
+
+                final ABCStructure structure = tune.structure;
+                for (int line = 0; line < structure.getLineCount(); ++line)
+                    out.writeInt(structure.getLineEnd(line));
+                for (int bar = 0; bar < structure.getBarCount(); ++bar)
+                    out.writeInt(structure.getBarNote(bar));
+                for (int bar = 0; bar < structure.getBarCount(); ++bar)
+                    out.writeInt(structure.getBarFlags(bar));
+                for (int bar = 0; bar < structure.getBarCount(); ++bar)
+                    out.writeInt(structure.getEnding(bar));
+            }
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Cannot replace " + file);
+
+        final long elapsed = System.currentTimeMillis() - start;
+        MusicLog.d("NoteIndex", () -> "Indexed " + tunes.size() + " tunes in " + elapsed + " ms");
+    }
+}
@@ -0,0 +1,94 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loading of a tune for display and playback, off the UI thread. Each stage is posted to the UI
+ * thread as soon as it is ready: the notes and their tabs first, then the audio.
+ */
+public class TuneLoader {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService audioExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface LoadCallback {
+        /**
+         * @param notes notes transposed to the key asked, owned by the UI from now on
+         */
+        void onTabsLoaded(List<MusicNote> notes, TabText tabs, PlayOrder playOrder, BeatGrid beatGrid);
+        void onAudioLoaded(MusicPlayer.PreparedTune tune);
+        void onLoadError(String error);
+        void onAudioError(String error);
+    }
+
+    /**
+     * Load a tune. {@link MusicPlayer#getInstance()} must have been called from the UI thread first.
+     * @param key whistle key to transpose the tune to
+     * @param tempoModifier tempo of the audio
+     */
+    public static void load(Context context, final MusicSheet sheet, final String key,
+                            final float tempoModifier, final LoadCallback callback) {
+        final Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            final long startTime = MusicLog.startTimer();
+            final List<MusicNote> notes;
+            try {
+                notes = MusicDB.open(appContext, sheet);
+            } catch (Exception e) {
+                MusicLog.e("TuneLoader", "Error opening track " + sheet.getFile(), e);
+                mainHandler.post(() -> callback.onLoadError(e.getMessage()));
+                return;
+            }
+            sheet.transposeKey(notes, MusicSettings.DEFAULT_KEY, key);
+            final TabText tabs = sheet.getTabs(notes);
+            final PlayOrder playOrder = sheet.getPlayOrder(notes);
+            final BeatGrid beatGrid = BeatGrid.of(sheet.getABC(), sheet.getStructure());
+
+            // Before the UI owns the notes
+            loadAudio(sheet.getFile(), key, tempoModifier, notes, playOrder, startTime, callback);
+            mainHandler.post(() -> callback.onTabsLoaded(notes, tabs, playOrder, beatGrid));
+            MusicLog.stopTimer("load.tabs", startTime, notes.size());
+        });
+    }
+
+    /**
+     * Prepare the audio of notes again, e.g. after they were edited, delivered to
+     * {@link LoadCallback#onAudioLoaded} or {@link LoadCallback#onAudioError}. Loads are
+     * delivered in the order they are asked for.
+     * @param notes notes in the key asked, copied before this returns
+     */
+    public static void loadAudio(String file, String key, float tempoModifier, List<MusicNote> notes,
+                                 PlayOrder playOrder, LoadCallback callback) {
+        loadAudio(file, key, tempoModifier, notes, playOrder, MusicLog.startTimer(), callback);
+    }
+
+    private static void loadAudio(final String file, final String key, final float tempoModifier,
+                                  List<MusicNote> notes, PlayOrder playOrder, final long startTime,
+                                  final LoadCallback callback) {
+        // The audio is prepared from a copy, as the UI may transpose the notes meanwhile
+        final List<MusicNote> copy = new ArrayList<>(notes.size());
+        for (MusicNote note : notes)
+            copy.add(new MusicNote(note));
+        final List<MusicNote> audioNotes = playOrder.apply(copy);
+
+        audioExecutor.execute(() -> {
+            try {
+                final String cacheKey = PCMCache.key(file, MusicSettings.getShift(key),
+                        tempoModifier, MusicPlayer.getInstance().getSampleRate(), audioNotes);
+                final MusicPlayer.PreparedTune tune = MusicPlayer.getInstance()
+                        .prepareStreamingTune(audioNotes, tempoModifier, cacheKey);
+                mainHandler.post(() -> callback.onAudioLoaded(tune));
+                MusicLog.stopTimer("load.audio", startTime, audioNotes.size());
+            } catch (Exception e) {
+                mainHandler.post(() -> callback.onAudioError(e.getMessage()));
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NoteIndexTest {
+    private static final String ABC = "X:1\nT:Test\nL:1/8\nK:D\n|:defg|1 abag:|2 fedc||\nd4 [1 A4|]\n";
+
+    @After
+    public void tearDown() {
+        MusicLog.setTracing(false);
+        MusicLog.resetMetrics();
+    }
+
+    @Test
+    public void indexedOpenDoesNotParse() throws Exception {
+        final File dir = Files.createTempDirectory("index").toFile();
+        final File file = new File(dir, "notes.idx");
+        final NoteIndex index = new NoteIndex(file, 1, 2);
+        index.build(Collections.singletonList(sheet()));
+        assertTrue(index.load());
+        final ABCParser.ABCParseResult parsed = ABCParser.parse(ABC);
+
+        MusicLog.setTracing(true);
+        final MusicSheet sheet = sheet();
+        final List<MusicNote> notes = index.open(sheet);
+        final TabText tabs = sheet.getTabs(notes);
+        final PlayOrder playOrder = sheet.getPlayOrder(notes);
+        assertFalse(MusicLog.dumpMetrics(), MusicLog.dumpMetrics().contains("abc.parse"));
+
+        // Same notes, structure, tabs and play order as a parse
+        assertEquals(parsed.notes.size(), notes.size());
+        for (int i = 0; i < notes.size(); ++i) {
+            assertEquals(parsed.notes.get(i).getPitch(), notes.get(i).getPitch());
+            assertEquals(parsed.notes.get(i).getTicks(), notes.get(i).getTicks());
+            assertEquals(parsed.notes.get(i).getTickMs(), notes.get(i).getTickMs(), 0);
+        }
+        final ABCStructure structure = sheet.getStructure();
+        assertEquals(parsed.structure.getLineCount(), structure.getLineCount());
+        for (int line = 0; line < structure.getLineCount(); ++line)
+            assertEquals(parsed.structure.getLineEnd(line), structure.getLineEnd(line));
+        assertEquals(parsed.structure.getBarCount(), structure.getBarCount());
+        for (int bar = 0; bar < structure.getBarCount(); ++bar) {
+            assertEquals(parsed.structure.getBarNote(bar), structure.getBarNote(bar));
+            assertEquals(parsed.structure.getBarFlags(bar), structure.getBarFlags(bar));
+            assertEquals(parsed.structure.getEnding(bar), structure.getEnding(bar));
+        }
+        assertEquals(TabText.of(parsed.notes, parsed.structure).getText(), tabs.getText());
+        assertEquals(PlayOrder.of(parsed.structure).size(), playOrder.size());
+
+        assertNull(new NoteIndex(file, 1, 2).open(sheet));
+        file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void outdatedIndexIsNotLoaded() throws Exception {
+        final File dir = Files.createTempDirectory("index").toFile();
+        final File file = new File(dir, "notes.idx");
+        new NoteIndex(file, 1, 2).build(Collections.singletonList(sheet()));
+
+        assertTrue(new NoteIndex(file, 1, 2).load());
+        assertFalse(new NoteIndex(file, 2, 2).load());
+        assertFalse(new NoteIndex(file, 1, 3).load());
+        file.delete();
+        dir.delete();
+    }
+
+    private static MusicSheet sheet() throws Exception {
+        final JSONObject json = new JSONObject();
+        json.put("title", "Test");
+        json.put("file", "builtin_test");
+        json.put("type", "Reel");
+        json.put("abc", ABC);
+        return new MusicSheet(json);
+    }
+}
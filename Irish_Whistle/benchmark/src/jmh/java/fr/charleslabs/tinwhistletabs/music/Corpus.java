@@ -0,0 +1,51 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The built-in tunes of db.json that have ABC, with their parsed notes.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+    static final int SAMPLE_RATE = 22050;
+
+    final List<MusicSheet> sheets = new ArrayList<>();
+    final List<List<MusicNote>> notes = new ArrayList<>();
+
+    @Setup
+    public void load() throws Exception {
+        final JSONArray json = new JSONArray(readResource("/db.json"));
+        for (int i = 0; i < json.length(); ++i) {
+            final MusicSheet sheet = new MusicSheet(json.getJSONObject(i));
+            if (sheet.getABC() == null || sheet.getABC().isEmpty())
+                continue;
+            sheets.add(sheet);
+            notes.add(ABCParser.parse(sheet.getABC()).notes);
+        }
+        if (sheets.isEmpty())
+            throw new IllegalStateException("No ABC tune in db.json");
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = Corpus.class.getResourceAsStream(name)) {
+            if (in == null)
+                throw new IOException("Missing resource " + name);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+                out.write(buffer, 0, count);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
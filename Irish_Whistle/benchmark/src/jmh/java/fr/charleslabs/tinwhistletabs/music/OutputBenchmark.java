@@ -0,0 +1,42 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Streaming render of the corpus at the sample rates MusicPlayer may output at (its default, and
+ * the usual native rates), to 16 bit or float samples. The corpus lasts as long at every rate,
+ * so the scores compare the cost of the same audio at each rate.
+ */
+@State(Scope.Thread)
+public class OutputBenchmark {
+    private static final int BLOCK_SIZE = 1920; // 48 kHz devices: 10 buffers of 192 frames
+
+    @Param({"22050", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"false", "true"})
+    public boolean floatOutput;
+
+    private final short[] pcm = new short[BLOCK_SIZE];
+    private final float[] pcmFloat = new float[BLOCK_SIZE];
+
+    @Benchmark
+    public void streamTune(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes) {
+            final MusicRenderer renderer = new MusicRenderer(notes, 1f, sampleRate);
+            if (floatOutput) {
+                while (renderer.renderPCM(pcmFloat) == pcmFloat.length)
+                    blackhole.consume(pcmFloat);
+            } else {
+                while (renderer.renderPCM(pcm) == pcm.length)
+                    blackhole.consume(pcm);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ABC parsing and tab layout of the whole corpus.
+ */
+public class ParserBenchmark {
+    @Benchmark
+    public void parse(Corpus corpus, Blackhole blackhole) throws Exception {
+        for (MusicSheet sheet : corpus.sheets)
+            blackhole.consume(ABCParser.parse(sheet.getABC()));
+    }
+
+    @Benchmark
+    public void notesToTabsWithLineBreaks(Corpus corpus, Blackhole blackhole) {
+        for (int i = 0; i < corpus.sheets.size(); ++i)
+            blackhole.consume(corpus.sheets.get(i).notesToTabsWithLineBreaks(corpus.notes.get(i)));
+    }
+}
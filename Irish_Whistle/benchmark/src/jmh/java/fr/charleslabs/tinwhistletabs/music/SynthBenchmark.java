@@ -0,0 +1,163 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import fr.charleslabs.tinwhistletabs.music.synth.FDNReverb;
+import fr.charleslabs.tinwhistletabs.music.synth.TinWhistleSynth;
+
+/**
+ * Audio rendering of the whole corpus. legacyRenderTune against renderTune gives the speed-up
+ * of the wavetable synth over the former Math.sin/Math.cos/Math.random one.
+ */
+@State(Scope.Thread)
+public class SynthBenchmark {
+    private static final int BLOCK_SIZE = 2048; // MusicPlayer streaming block
+
+    private float[][] dry; // each tune synthesized without reverb
+    private float[][] wet;
+    private final float[] block = new float[BLOCK_SIZE];
+    private final short[] pcm = new short[BLOCK_SIZE];
+
+    @Setup
+    public void setUp(Corpus corpus) {
+        dry = new float[corpus.notes.size()][];
+        wet = new float[corpus.notes.size()][];
+        for (int i = 0; i < dry.length; ++i) {
+            dry[i] = synthesize(corpus.notes.get(i));
+            wet[i] = new float[dry[i].length];
+        }
+    }
+
+    /**
+     * Notes only, whole tune in one buffer.
+     */
+    @Benchmark
+    public void renderTune(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes)
+            blackhole.consume(synthesize(notes));
+    }
+
+    /**
+     * renderTune with the former synth, before the wavetables.
+     */
+    @Benchmark
+    public void legacyRenderTune(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes) {
+            final TimingIndex timing = new TimingIndex(notes, 1f, Corpus.SAMPLE_RATE);
+            final float[] music = new float[timing.getTotalSamples()];
+            for (int i = 0; i < notes.size(); ++i) {
+                final MusicNote note = notes.get(i);
+                if (!note.isRest())
+                    LegacySynth.genNote(note.getFrequency(), timing.getLength(i), music, timing.getStart(i), Corpus.SAMPLE_RATE);
+            }
+            blackhole.consume(music);
+        }
+    }
+
+    /**
+     * Notes only, whole tune in one buffer, ranges of notes synthesized on the fork-join pool.
+     * Compare with renderTune for the scaling over the cores.
+     */
+    @Benchmark
+    public void renderTuneParallel(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes)
+            blackhole.consume(MusicRenderer.synthesize(notes, new TimingIndex(notes, 1f, Corpus.SAMPLE_RATE),
+                    Corpus.SAMPLE_RATE));
+    }
+
+    /**
+     * Whole tune at once: notes in parallel, reverb and 16 bit conversion (MusicRenderer.genMusic).
+     */
+    @Benchmark
+    public void genMusic(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes)
+            blackhole.consume(MusicRenderer.genMusic(notes, 1f, Corpus.SAMPLE_RATE));
+    }
+
+    /**
+     * Reverb over a whole tune in one pass (includes copying the dry tune in).
+     */
+    @Benchmark
+    public void reverb(Blackhole blackhole) {
+        for (int i = 0; i < dry.length; ++i) {
+            System.arraycopy(dry[i], 0, wet[i], 0, dry[i].length);
+            TinWhistleSynth.reverb(wet[i], Corpus.SAMPLE_RATE);
+            blackhole.consume(wet[i]);
+        }
+    }
+
+    /**
+     * Block reverb used by the streaming renderer.
+     */
+    @Benchmark
+    public void blockReverb(Blackhole blackhole) {
+        for (float[] tune : dry) {
+            final FDNReverb reverb = new FDNReverb(Corpus.SAMPLE_RATE);
+            for (int offset = 0; offset < tune.length; offset += BLOCK_SIZE) {
+                final int count = Math.min(BLOCK_SIZE, tune.length - offset);
+                System.arraycopy(tune, offset, block, 0, count);
+                reverb.process(block, count);
+            }
+            blackhole.consume(block);
+        }
+    }
+
+    /**
+     * Streaming playback path: notes, block reverb and 16 bit conversion, block by block.
+     */
+    @Benchmark
+    public void streamTune(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes) {
+            final MusicRenderer renderer = new MusicRenderer(notes, 1f, Corpus.SAMPLE_RATE);
+            while (renderer.renderPCM(pcm) == pcm.length)
+                blackhole.consume(pcm);
+        }
+    }
+
+    private static float[] synthesize(List<MusicNote> notes) {
+        final TimingIndex timing = new TimingIndex(notes, 1f, Corpus.SAMPLE_RATE);
+        final float[] music = new float[timing.getTotalSamples()];
+        for (int i = 0; i < notes.size(); ++i) {
+            final MusicNote note = notes.get(i);
+            if (!note.isRest())
+                TinWhistleSynth.genNote(note.getFrequency(), timing.getLength(i), music, timing.getStart(i), Corpus.SAMPLE_RATE);
+        }
+        return music;
+    }
+
+    /**
+     * Former implementation of the synth, as in TinWhistleSynthTest.
+     */
+    private static final class LegacySynth {
+        static void genNote(float frequency, int numSamples, float[] music, int offset, int sampleRate) {
+            final float amp = 0.3f, attack = 0.05f, decay = 0.2f, release = 0.2f, sustainLevel = 0.4f;
+            for (int i = 0; i < numSamples && i+offset < music.length; ++i)
+                music[i+offset] = amp*((float)(Math.sin(2 * Math.PI * i / (sampleRate / frequency)) +
+                        0.30 * Math.sin(2 * Math.PI * i / (sampleRate / 2d / frequency)) +
+                        0.20 * Math.sin(2 * Math.PI * i / (sampleRate / 3d / frequency)) +
+                        0.10 * Math.sin(2 * Math.PI * i / (sampleRate / 4d / frequency))));
+            for (int i = 0; i < numSamples && i+offset < music.length; ++i)
+                music[i+offset] += 0.015f * Math.random();
+
+            final int a = (int)(attack*numSamples), d = (int)(decay*numSamples), r = (int)(release*numSamples);
+            final int s = numSamples - a - d - r;
+            for (int i = 0; i < a; ++i)
+                music[i+offset] *= (float)i/a;
+            for (int i = 0; i < d; ++i)
+                music[i+offset+a] *= 1f + (float)i*(sustainLevel - 1f)/d;
+            for (int i = 0; i < s; ++i)
+                music[i+offset+a+d] *= sustainLevel;
+            for (int i = 0; i < r; ++i)
+                music[i+offset+numSamples-r] *= sustainLevel - (float)i*sustainLevel/(float)r;
+
+            for (int i = 0; i < numSamples; ++i)
+                music[i+offset] *= (1-0.18f) + 0.18f*Math.cos(2 * Math.PI * i / (sampleRate / 4f));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Cost of the MusicLog tracing on the parser, tab layout and renderer hot paths, with tracing off
+ * (release builds) and on (debug builds, messages formatted and discarded).
+ * Compare gc.alloc.rate.norm: with tracing off, it is the allocation of the results alone.
+ */
+@State(Scope.Benchmark)
+public class TracingBenchmark {
+    private static final int BLOCK_SIZE = 2048;
+
+    @Param({"false", "true"})
+    public boolean tracing;
+
+    private final short[] pcm = new short[BLOCK_SIZE];
+
+    @Setup
+    public void setUp() {
+        MusicLog.setTracing(tracing);
+        // Messages are formatted, as logcat would, then dropped
+        MusicLog.setLogger((priority, tag, message, throwable) -> {});
+    }
+
+    @TearDown
+    public void tearDown() {
+        MusicLog.setTracing(false);
+        MusicLog.setLogger(null);
+        MusicLog.resetMetrics();
+    }
+
+    @Benchmark
+    public void parseAndLayout(Corpus corpus, Blackhole blackhole) throws Exception {
+        for (MusicSheet sheet : corpus.sheets) {
+            final List<MusicNote> notes = ABCParser.parse(sheet.getABC()).notes;
+            blackhole.consume(sheet.getTabs(notes));
+        }
+    }
+
+    /**
+     * First seconds of each tune: one synth timer per note and block.
+     */
+    @Benchmark
+    public void render(Corpus corpus, Blackhole blackhole) {
+        for (List<MusicNote> notes : corpus.notes) {
+            final MusicRenderer renderer = new MusicRenderer(notes, 1f, Corpus.SAMPLE_RATE);
+            for (int i = 0; i < 16 && renderer.renderPCM(pcm) == pcm.length; ++i)
+                blackhole.consume(pcm);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parser for ABC files holding many tunes (tune books, thesession.org dumps...).
+ * The file is split on its X: (reference number) lines, and the tunes are parsed in parallel on a
+ * bounded fork-join pool. A tune that fails to parse is reported, it does not stop the import.
+ */
+public class ABCBookParser {
+    private static final String TAG = "ABCBookParser";
+    private static final int TUNES_PER_TASK = 16;
+
+    public static class Tune {
+        public final int number; // X: value, -1 if missing
+        public final int line; // first line of the tune in the file, from 1
+        public final String abc;
+        public String rhythm = null; // R:
+        public String composer = null; // C:
+
+        // Set by parse, exactly one of the two
+        public ABCParser.ABCParseResult result = null;
+        public String error = null;
+
+        Tune(int number, int line, String abc) {
+            this.number = number;
+            this.line = line;
+            this.abc = abc;
+        }
+
+        /**
+         * @return the title if parsed, else a description of the tune position in the file
+         */
+        public String getName() {
+            if (result != null && !result.title.isEmpty())
+                return result.title;
+            return number >= 0 ? "X:" + number + " (line " + line + ")" : "Line " + line;
+        }
+    }
+
+    /**
+     * Split a file into its tunes, without parsing them. The file header (the lines before the
+     * first X:, e.g. a default L: or M:) is copied into each tune, right after its X: line, so
+     * that the tune stays a valid ABC tune and its own fields override the inherited ones.
+     * A file without any X: is a single tune.
+     */
+    public static List<Tune> split(String book) {
+        final List<Tune> tunes = new ArrayList<>();
+        final int length = book.length();
+        final StringBuilder fileHeader = new StringBuilder();
+
+        int tuneStart = -1, tuneLine = 0, tuneNumber = -1;
+        String rhythm = null, composer = null;
+        int lineStart = 0, lineNumber = 1;
+        while (lineStart <= length) {
+            int lineEnd = book.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+
+            int start = lineStart, end = lineEnd;
+            while (start < end && book.charAt(start) <= ' ') start++;
+            while (end > start && book.charAt(end - 1) <= ' ') end--;
+            final char field = ABCParser.headerField(book, start, end);
+
+            if (field == 'X') {
+                if (tuneStart >= 0)
+                    tunes.add(newTune(tuneNumber, tuneLine, fileHeader, book, tuneStart, lineStart, rhythm, composer));
+                tuneStart = lineStart;
+                tuneLine = lineNumber;
+                tuneNumber = parseNumber(book, start + 2, end);
+                rhythm = composer = null;
+            } else {
+                if (tuneStart < 0 && field != 0)
+                    fileHeader.append(book, start, end).append('\n');
+                if (field == 'R' && rhythm == null)
+                    rhythm = book.substring(start + 2, end).trim();
+                else if (field == 'C' && composer == null)
+                    composer = book.substring(start + 2, end).trim();
+            }
+
+            lineStart = lineEnd + 1;
+            lineNumber++;
+        }
+
+        if (tuneStart >= 0)
+            tunes.add(newTune(tuneNumber, tuneLine, fileHeader, book, tuneStart, length, rhythm, composer));
+        else if (!book.trim().isEmpty())
+            tunes.add(newTune(-1, 1, new StringBuilder(), book, 0, length, rhythm, composer));
+        return tunes;
+    }
+
+    /**
+     * Split a file into its tunes and parse them.
+     * @param parallelism maximum number of threads used
+     */
+    public static List<Tune> parse(String book, int parallelism) {
+        final long startTime = MusicLog.startTimer();
+        final List<Tune> tunes = split(book);
+        if (tunes.isEmpty())
+            return tunes;
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new ParseTask(tunes, 0, tunes.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        MusicLog.stopTimer("abc.book", startTime, tunes.size());
+        return tunes;
+    }
+
+    /**
+     * Parse a range of tunes, splitting it in two until it is small enough.
+     */
+    private static class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Tune> tunes;
+        private final int from, to;
+
+        ParseTask(List<Tune> tunes, int from, int to) {
+            this.tunes = tunes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TUNES_PER_TASK) {
+                for (int i = from; i < to; ++i)
+                    parseTune(tunes.get(i));
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(tunes, from, middle), new ParseTask(tunes, middle, to));
+        }
+    }
+
+    private static void parseTune(Tune tune) {
+        try {
+            tune.result = ABCParser.parse(tune.abc);
+        } catch (Exception e) {
+            tune.error = e.getMessage() != null ? e.getMessage() : e.toString();
+            if (MusicLog.isTracing())
+                MusicLog.d(TAG, () -> tune.getName() + ": " + tune.error);
+        }
+    }
+
+    private static Tune newTune(int number, int line, StringBuilder fileHeader, String book, int start, int end,
+                                String rhythm, String composer) {
+        final String abc;
+        if (fileHeader.length() == 0) {
+            abc = book.substring(start, end);
+        } else {
+            // After the X: line
+            int headerEnd = book.indexOf('\n', start);
+            headerEnd = headerEnd < 0 || headerEnd >= end ? end : headerEnd + 1;
+            abc = book.substring(start, headerEnd) + (headerEnd == end && book.charAt(end - 1) != '\n' ? "\n" : "")
+                    + fileHeader + book.substring(headerEnd, end);
+        }
+        final Tune tune = new Tune(number, line, abc);
+        tune.rhythm = rhythm;
+        tune.composer = composer;
+        return tune;
+    }
+
+    private static int parseNumber(String s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') start++;
+        int number = 0, i = start;
+        while (i < end && i - start < 9 && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+            number = number * 10 + (s.charAt(i++) - '0');
+        return i > start ? number : -1;
+    }
+}
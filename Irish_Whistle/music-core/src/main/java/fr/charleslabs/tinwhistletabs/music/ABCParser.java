@@ -0,0 +1,677 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ABCParser {
+    
+    private static final int DEFAULT_NOTE_LENGTH = MusicNote.TICKS_PER_WHOLE / 8; // 1/8 note, in ticks
+    static final int DEFAULT_TEMPO = 120;
+    private static final int WHISTLE_MIN_PITCH = 54; // d
+    private static final int WHISTLE_MAX_PITCH = 78; // d''
+    private static final int MIDI_TO_PROJECT_OFFSET = 20;
+    private static final int OCTAVE_SHIFT = 12;
+
+    // Project pitch = MIDI note - 20. In ABC uppercase = octave 4 (C = MIDI 60), lowercase = octave 5,
+    // each apostrophe raises and each comma lowers by one octave.
+    private static final int UPPERCASE_C_PITCH = 60 - MIDI_TO_PROJECT_OFFSET; // 40
+    // Semitones above C, indexed by letter - 'A'
+    private static final int[] LETTER_SEMITONES = {9, 11, 0, 2, 4, 5, 7};
+    // Half-holed notes (chromatic notes)
+    private static final int[] HALF_HOLED = {55, 57, 60, 62, 64, 67, 69, 72, 74, 76};
+    // Order in which sharps and flats enter a key signature
+    private static final String SHARPS_ORDER = "FCGDAEB", FLATS_ORDER = "BEADGCF";
+    
+    public static class ABCParseResult {
+        public List<MusicNote> notes;
+        public String key;
+        public String meter;
+        public int tempo;
+        public String title;
+        public ABCStructure structure; // lines and bar lines, note indexes in notes
+        
+        public ABCParseResult() {
+            notes = new ArrayList<>();
+            key = "D";
+            meter = "4/4";
+            tempo = DEFAULT_TEMPO;
+            title = "";
+            structure = ABCStructure.EMPTY;
+        }
+    }
+    
+    public static ABCParseResult parse(String abc) throws Exception {
+        final long startTime = MusicLog.startTimer();
+        final ABCParseResult result = new ABCParseResult();
+        
+        if (abc == null || abc.trim().isEmpty()) {
+            throw new Exception("ABC notation is empty");
+        }
+        
+        final int length = abc.length();
+        State state = State.INITIAL;
+        final ABCStructure.Builder structure = new ABCStructure.Builder();
+        
+        // Walk the lines in place, only headers are copied out
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int lineEnd = abc.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            state = parseLine(abc, lineStart, lineEnd, state, result, result.notes, structure);
+            lineStart = lineEnd + 1;
+        }
+        result.structure = structure.build();
+        
+        if (result.notes.isEmpty()) {
+            throw new Exception("No notes found in ABC notation");
+        }
+        
+        // Automatic transposition to D whistle range (54-78)
+        final int[] rangeBefore = MusicLog.isTracing() ? pitchRange(result.notes) : null;
+        autoTranspose(result.notes);
+        MusicLog.stopTimer("abc.parse", startTime, result.notes.size());
+        if (rangeBefore != null) {
+            final int[] rangeAfter = pitchRange(result.notes);
+            MusicLog.d("ABCParser", () -> "Parse complete: " + result.notes.size() + " notes, tempo=" + result.tempo
+                    + " BPM, key=" + result.key + ", pitches " + rangeBefore[0] + "-" + rangeBefore[1]
+                    + " transposed to " + rangeAfter[0] + "-" + rangeAfter[1]);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return lowest and highest pitch of the notes, rests excluded
+     */
+    private static int[] pitchRange(List<MusicNote> notes) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (MusicNote note : notes) {
+            if (!note.isRest()) {
+                min = Math.min(min, note.getPitch());
+                max = Math.max(max, note.getPitch());
+            }
+        }
+        return new int[]{min, max};
+    }
+    
+    /**
+     * What a line inherits from the headers above it. Immutable.
+     */
+    static final class State {
+        static final State INITIAL = new State(DEFAULT_NOTE_LENGTH, new TempoInfo(DEFAULT_TEMPO, 1, 4),
+                new int[LETTER_SEMITONES.length]);
+        
+        final int defaultLength;
+        final TempoInfo tempoInfo;
+        final int[] keySignature;
+        
+        State(int defaultLength, TempoInfo tempoInfo, int[] keySignature) {
+            this.defaultLength = defaultLength;
+            this.tempoInfo = tempoInfo;
+            this.keySignature = keySignature;
+        }
+        
+        boolean sameAs(State other) {
+            return defaultLength == other.defaultLength && tempoInfo.sameAs(other.tempoInfo)
+                    && Arrays.equals(keySignature, other.keySignature);
+        }
+    }
+    
+    /**
+     * @return the header field of a line (e.g. 'K' for "K: D"), or 0 if it is not a header
+     */
+    static char headerField(String abc, int start, int end) {
+        while (start < end && abc.charAt(start) <= ' ') start++;
+        final char field = end - start >= 2 && abc.charAt(start + 1) == ':' ? abc.charAt(start) : 0;
+        return field >= 'A' && field <= 'Z' ? field : 0;
+    }
+    
+    /**
+     * Parse one line, from start (inclusive) to end (exclusive). Headers are stored in result
+     * (unless null), notes are appended to notes, and a music line and its bar lines to structure
+     * (unless null), with note indexes in notes.
+     * @return the state for the next line
+     */
+    static State parseLine(String abc, int start, int end, State state, ABCParseResult result,
+                           List<MusicNote> notes, ABCStructure.Builder structure) throws Exception {
+        // Trim
+        while (start < end && abc.charAt(start) <= ' ') start++;
+        while (end > start && abc.charAt(end - 1) <= ' ') end--;
+        
+        // Skip empty lines and comments
+        if (start == end || abc.charAt(start) == '%') {
+            return state;
+        }
+        
+        // Parse notes
+        final char field = headerField(abc, start, end);
+        if (field == 0) {
+            parseNoteLine(abc, start, end, notes, state.defaultLength, state.tempoInfo, state.keySignature,
+                    structure);
+            if (structure != null) structure.endLine(notes.size());
+            return state;
+        }
+        
+        // Parse headers
+        final String value = abc.substring(start + 2, end).trim();
+        try {
+            switch (field) {
+                case 'T':
+                    if (result != null) result.title = value;
+                    return state;
+                case 'K': {
+                    final String key = value.split("\\s+")[0];
+                    if (result != null) result.key = key;
+                    return new State(state.defaultLength, state.tempoInfo, getKeySignature(key));
+                }
+                case 'M':
+                    if (result != null) result.meter = value;
+                    return state;
+                case 'L':
+                    return new State(parseFraction(value), state.tempoInfo, state.keySignature);
+                case 'Q': {
+                    final TempoInfo tempoInfo = parseTempo(value, state.defaultLength);
+                    // For backward compatibility save BPM in result.tempo
+                    if (result != null) result.tempo = tempoInfo.bpm;
+                    return new State(state.defaultLength, tempoInfo, state.keySignature);
+                }
+                default:
+                    // R: (rhythm) is saved only for display, other headers are skipped
+                    return state;
+            }
+        } catch (RuntimeException e) {
+            throw new Exception("Invalid header " + field + ":" + value);
+        }
+    }
+    
+    /**
+     * Pitches of a tune (rests excluded): their range, plus a bitmask of those below 128 so that
+     * transpositions can be checked without going through the notes again.
+     */
+    static final class PitchSet {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        private long low, high; // pitches 0-63, 64-127
+        
+        void add(int pitch) {
+            if (pitch < min) min = pitch;
+            if (pitch > max) max = pitch;
+            if (pitch >= 0 && pitch < 64) low |= 1L << pitch;
+            else if (pitch >= 64 && pitch < 128) high |= 1L << (pitch - 64);
+        }
+        
+        void addAll(List<MusicNote> notes) {
+            for (MusicNote note : notes) {
+                if (!note.isRest()) add(note.getPitch());
+            }
+        }
+        
+        void addAll(PitchSet other) {
+            if (other.min < min) min = other.min;
+            if (other.max > max) max = other.max;
+            low |= other.low;
+            high |= other.high;
+        }
+        
+        boolean contains(int pitch) {
+            if (pitch >= 0 && pitch < 64) return (low & (1L << pitch)) != 0;
+            if (pitch >= 64 && pitch < 128) return (high & (1L << (pitch - 64))) != 0;
+            return false;
+        }
+        
+        boolean isEmpty() {
+            return min == Integer.MAX_VALUE;
+        }
+    }
+    
+    private static void autoTranspose(List<MusicNote> notes) {
+        final PitchSet pitches = new PitchSet();
+        pitches.addAll(notes);
+        final int shift = findTransposition(pitches);
+        if (shift != 0) {
+            transposeNotes(notes, shift);
+        }
+    }
+    
+    /**
+     * @return the shift that brings the pitches into the D whistle range, 0 if there is none
+     */
+    static int findTransposition(PitchSet pitches) {
+        if (pitches.isEmpty()) return 0;
+        
+        // First try without half-holed notes
+        int shift = findTransposition(pitches, WHISTLE_MIN_PITCH, WHISTLE_MAX_PITCH, HALF_HOLED, false);
+        
+        // If failed, allow half-holed notes
+        if (shift == Integer.MIN_VALUE) {
+            MusicLog.w("ABCParser", "Couldn't find transposition without half-holed notes, trying with...");
+            shift = findTransposition(pitches, WHISTLE_MIN_PITCH, WHISTLE_MAX_PITCH, HALF_HOLED, true);
+        }
+        
+        return shift != Integer.MIN_VALUE ? shift : 0;
+    }
+    
+    private static int findTransposition(PitchSet pitches, int whistleMin, int whistleMax,
+                                        int[] halfHoled, boolean allowHalfHoled) {
+        final int min = pitches.min, max = pitches.max;
+        
+        // If already in range and no half-holed notes (or they are allowed)
+        if (min >= whistleMin && max <= whistleMax) {
+            if (allowHalfHoled || !hasHalfHoled(pitches, 0, halfHoled)) {
+                return 0;
+            }
+        }
+        
+        // Try octave up (+12) - works in most cases
+        if (min + 12 >= whistleMin && max + 12 <= whistleMax) {
+            if (allowHalfHoled || !hasHalfHoled(pitches, 12, halfHoled)) {
+                return 12;
+            }
+        }
+        
+        // Try octave down (-12)
+        if (min - 12 >= whistleMin && max - 12 <= whistleMax) {
+            if (allowHalfHoled || !hasHalfHoled(pitches, -12, halfHoled)) {
+                return -12;
+            }
+        }
+        
+        // Automatic semitone search - try all shifts in range
+        // Start from -24 to +24 to cover all possibilities
+        for (int shift = -24; shift <= 24; shift++) {
+            if (min + shift >= whistleMin && max + shift <= whistleMax) {
+                if (allowHalfHoled || !hasHalfHoled(pitches, shift, halfHoled)) {
+                    if (shift != 0 && shift != 12 && shift != -12) {
+                        MusicLog.w("ABCParser", "Shift is not perfect octave (" + shift + ")");
+                    }
+                    return shift;
+                }
+            }
+        }
+        
+        // If no suitable transposition found
+        return Integer.MIN_VALUE;
+    }
+    
+    private static boolean hasHalfHoled(PitchSet pitches, int shift, int[] halfHoled) {
+        for (int hh : halfHoled) {
+            if (pitches.contains(hh - shift)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static void transposeNotes(List<MusicNote> notes, int shift) {
+        for (MusicNote note : notes) {
+            note.transpose(shift);
+        }
+    }
+    
+    private static int[] getKeySignature(String key) {
+        final int[] signature = new int[LETTER_SEMITONES.length];
+        final int accidentals = countAccidentals(key.toUpperCase().trim());
+        for (int i = 0; i < Math.abs(accidentals); ++i) {
+            final char note = (accidentals > 0 ? SHARPS_ORDER : FLATS_ORDER).charAt(i);
+            signature[note - 'A'] = accidentals > 0 ? 1 : -1;
+        }
+        return signature;
+    }
+    
+    /**
+     * @return the number of sharps (positive) or flats (negative) of a normalized key
+     */
+    private static int countAccidentals(String normalizedKey) {
+        // Determine number of sharps/flats for main keys
+        // For major and minor keys
+        switch (normalizedKey) {
+            // Minor keys (check FIRST to avoid confusion with major)
+            case "EMINOR":
+            case "EMIN":
+            case "EM":
+                // E minor = G major (1 sharp: F#)
+                return 1;
+            case "BMINOR":
+            case "BMIN":
+            case "BM":
+                // B minor = D major (2 sharps: F#, C#)
+                return 2;
+            case "AMINOR":
+            case "AMIN":
+            case "AM":
+                // A minor = C major (no sharps/flats)
+                return 0;
+            case "DMINOR":
+            case "DMIN":
+            case "DM":
+                // D minor = F major (1 flat: Bb)
+                return -1;
+            case "GMINOR":
+            case "GMIN":
+            case "GM":
+                // G minor = Bb major (2 flats: Bb, Eb)
+                return -2;
+            case "FMINOR":
+            case "FMIN":
+            case "FM":
+                // F minor = Ab major (4 flats: Bb, Eb, Ab, Db)
+                return -4;
+            case "CMINOR":
+            case "CMIN":
+            case "CM":
+                // C minor = Eb major (3 flats: Bb, Eb, Ab)
+                return -3;
+                
+            // Major keys with sharps
+            case "GMAJOR":
+            case "GMAJ":
+            case "G": // 1 sharp: F#
+                return 1;
+            case "DMAJOR":
+            case "DMAJ":
+            case "D": // 2 sharps: F#, C#
+                return 2;
+            case "AMAJOR":
+            case "AMAJ":
+            case "A": // 3 sharps: F#, C#, G#
+                return 3;
+            case "EMAJOR":
+            case "EMAJ":
+            case "E": // 4 диеза: F#, C#, G#, D#
+                return 4;
+            case "BMAJOR":
+            case "BMAJ":
+            case "B": // 5 sharps: F#, C#, G#, D#, A#
+                return 5;
+                
+            // Major keys with flats
+            case "FMAJOR":
+            case "FMAJ":
+            case "F": // 1 flat: Bb
+                return -1;
+            case "BBMAJOR":
+            case "BBMAJ":
+            case "BB": // 2 flats: Bb, Eb
+                return -2;
+            case "EBMAJOR":
+            case "EBMAJ":
+            case "EB": // 3 flats: Bb, Eb, Ab
+                return -3;
+                
+            // C major - no sharps/flats
+            case "CMAJOR":
+            case "CMAJ":
+            case "C":
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Single pass tokenizer of a music line, from start (inclusive) to end (exclusive).
+     * Pitches are computed from the letter, accidentals and octave marks, nothing is allocated
+     * but the notes themselves. Bar lines, repeats and endings go to structure, unless null.
+     */
+    private static void parseNoteLine(String line, int start, int end, List<MusicNote> notes, int defaultLength,
+                                      TempoInfo tempoInfo, int[] keySignature, ABCStructure.Builder structure) {
+        final double tickMs = tempoInfo.tickMs();
+        // Tuplet being read: its next notes last q/p of their length
+        int tupletNotes = 0, tupletP = 1, tupletQ = 1;
+        int i = start;
+        while (i < end) {
+            final char c = line.charAt(i);
+            
+            // Rest
+            if (c == 'z' || c == 'x') {
+                int length = parseNoteLength(line, i + 1, end, defaultLength);
+                if (tupletNotes > 0) {
+                    length = length * tupletQ / tupletP;
+                    tupletNotes--;
+                }
+                notes.add(new MusicNote(0, length, tickMs)); // 0 = rest
+                i = skipLength(line, i + 1, end);
+                continue;
+            }
+            
+            // Tuplet: (p, (p:q or (p:q:r, p notes (or r) in the time of q
+            if (c == '(' && i + 1 < end && isDigit(line.charAt(i + 1))) {
+                int endPos = skipDigits(line, i + 1, end);
+                tupletP = Math.max(1, parseDigits(line, i + 1, endPos));
+                tupletQ = defaultTupletTime(tupletP);
+                tupletNotes = tupletP;
+                if (endPos < end && line.charAt(endPos) == ':') {
+                    final int qEnd = skipDigits(line, endPos + 1, end);
+                    if (qEnd > endPos + 1)
+                        tupletQ = parseDigits(line, endPos + 1, qEnd);
+                    endPos = qEnd;
+                    if (endPos < end && line.charAt(endPos) == ':') {
+                        final int rEnd = skipDigits(line, endPos + 1, end);
+                        if (rEnd > endPos + 1)
+                            tupletNotes = parseDigits(line, endPos + 1, rEnd);
+                        endPos = rEnd;
+                    }
+                }
+                i = endPos;
+                continue;
+            }
+            
+            // Note
+            final boolean isUpperCase = c >= 'A' && c <= 'G';
+            if (isUpperCase || (c >= 'a' && c <= 'g')) {
+                final int letter = isUpperCase ? c - 'A' : c - 'a';
+                int pitch = UPPERCASE_C_PITCH + LETTER_SEMITONES[letter] + (isUpperCase ? 0 : OCTAVE_SHIFT);
+                
+                // Accidentals (sharp/flat/natural) precede the letter; they override the key signature
+                boolean hasExplicitAccidental = false;
+                for (int j = i - 1; j >= start; --j) {
+                    final char accidental = line.charAt(j);
+                    if (accidental == '^') pitch++;
+                    else if (accidental == '_') pitch--;
+                    else if (accidental != '=') break;
+                    hasExplicitAccidental = true;
+                }
+                if (!hasExplicitAccidental) {
+                    pitch += keySignature[letter];
+                }
+                i++;
+                
+                // Octave (apostrophe or comma)
+                for (; i < end; ++i) {
+                    final char mark = line.charAt(i);
+                    if (mark == '\'') pitch += OCTAVE_SHIFT;
+                    else if (mark == ',') pitch -= OCTAVE_SHIFT;
+                    else break;
+                }
+                
+                // Duration
+                int length = parseNoteLength(line, i, end, defaultLength);
+                if (tupletNotes > 0) {
+                    length = length * tupletQ / tupletP;
+                    tupletNotes--;
+                }
+                i = skipLength(line, i, end);
+                notes.add(new MusicNote(pitch, length, tickMs));
+                continue;
+            }
+            
+            // Bar line (|, ||, [|, |], |:, :|, ::), with the ending it may open (|1, :|2, |[1)
+            if (isBarLineStart(line, i, end)) {
+                int flags = 0;
+                if (c == ':') flags |= ABCStructure.REPEAT_END;
+                boolean hasBar = false;
+                for (; i < end && isBarLineChar(line, i, end); ++i) {
+                    final char bar = line.charAt(i);
+                    if (bar == '|') {
+                        if (hasBar || (i > start && line.charAt(i - 1) == '[') || (i + 1 < end && line.charAt(i + 1) == ']'))
+                            flags |= ABCStructure.DOUBLE;
+                        hasBar = true;
+                    }
+                }
+                if (line.charAt(i - 1) == ':') flags |= ABCStructure.REPEAT_START;
+                if (structure != null) structure.addBar(notes.size(), flags);
+                if (i + 1 < end && line.charAt(i) == '[' && isDigit(line.charAt(i + 1))) i++;
+                if (i < end && isDigit(line.charAt(i))) {
+                    final int endPos = skipDigits(line, i, end);
+                    if (structure != null) structure.addEnding(notes.size(), parseDigits(line, i, endPos));
+                    i = endPos;
+                }
+                continue;
+            }
+            
+            // Ending after a space ("| [2")
+            if (c == '[' && i + 1 < end && isDigit(line.charAt(i + 1))) {
+                final int endPos = skipDigits(line, i + 1, end);
+                if (structure != null) structure.addEnding(notes.size(), parseDigits(line, i + 1, endPos));
+                i = endPos;
+                continue;
+            }
+            
+            // Skip spaces, ornaments (~) and other characters
+            i++;
+        }
+    }
+    
+    /**
+     * A bar line starts with a '|', "[|", or ':' followed by '|' or ':' (":|", "::").
+     */
+    private static boolean isBarLineStart(String line, int i, int end) {
+        final char c = line.charAt(i);
+        if (c == '|') return true;
+        if (i + 1 >= end) return false;
+        final char next = line.charAt(i + 1);
+        return (c == '[' && next == '|') || (c == ':' && (next == '|' || next == ':'));
+    }
+    
+    private static boolean isBarLineChar(String line, int i, int end) {
+        final char c = line.charAt(i);
+        return c == '|' || c == ':'
+                || (c == ']' && line.charAt(i - 1) == '|')
+                || (c == '[' && i + 1 < end && line.charAt(i + 1) == '|');
+    }
+    
+    /**
+     * @return the time of a tuplet of p notes when not given, in notes of its kind (simple meter)
+     */
+    private static int defaultTupletTime(int p) {
+        switch (p) {
+            case 2: case 4: case 8: return 3;
+            case 3: case 6: return 2;
+            default: return p > 1 ? 2 : 1;
+        }
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * @return the length in ticks of a note of the given length suffix: "", "3", "/", "//", "/4", "3/2"
+     */
+    private static int parseNoteLength(String line, int startPos, int end, int defaultLength) {
+        int pos = skipDigits(line, startPos, end);
+        final int numerator = pos > startPos ? parseDigits(line, startPos, pos) : 1;
+        int denominator = 1;
+        while (pos < end && line.charAt(pos) == '/') {
+            final int endPos = skipDigits(line, pos + 1, end);
+            denominator *= endPos > pos + 1 ? Math.max(1, parseDigits(line, pos + 1, endPos)) : 2; // Just / means half
+            pos = endPos;
+        }
+        return (int) ((long) defaultLength * numerator / denominator);
+    }
+    
+    private static int skipLength(String line, int startPos, int end) {
+        int pos = skipDigits(line, startPos, end);
+        while (pos < end && line.charAt(pos) == '/') {
+            pos = skipDigits(line, pos + 1, end);
+        }
+        return pos;
+    }
+    
+    private static int skipDigits(String line, int pos, int end) {
+        while (pos < end && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+    
+    private static int parseDigits(String line, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; ++i) {
+            value = 10 * value + (line.charAt(i) - '0');
+        }
+        return value;
+    }
+    
+
+    
+    private static int parseFraction(String fraction) {
+        if (fraction.contains("/")) {
+            String[] parts = fraction.split("/");
+            int numerator = Integer.parseInt(parts[0].trim());
+            int denominator = Integer.parseInt(parts[1].trim());
+            return MusicNote.TICKS_PER_WHOLE * numerator / denominator;
+        }
+        return DEFAULT_NOTE_LENGTH;
+    }
+    
+    static class TempoInfo {
+        final int bpm;              // Beats per minute
+        final int beatNumerator;    // Numerator of beat duration (e.g., 3 for 3/8)
+        final int beatDenominator;  // Denominator of beat duration (e.g., 8 for 3/8)
+        
+        TempoInfo(int bpm, int beatNumerator, int beatDenominator) {
+            this.bpm = bpm;
+            this.beatNumerator = beatNumerator;
+            this.beatDenominator = beatDenominator;
+        }
+        
+        boolean sameAs(TempoInfo other) {
+            return bpm == other.bpm && beatNumerator == other.beatNumerator
+                    && beatDenominator == other.beatDenominator;
+        }
+        
+        // Duration of a whole note in milliseconds
+        double wholeNoteMs() {
+            return 60000.0 / bpm * beatDenominator / beatNumerator;
+        }
+        
+        // Duration of a tick in milliseconds
+        double tickMs() {
+            return wholeNoteMs() / MusicNote.TICKS_PER_WHOLE;
+        }
+    }
+    
+    static TempoInfo parseTempo(String tempoStr, int defaultLength) {
+        // Format: "1/4=120" or "3/8=110" or just "120"
+        Pattern pattern = Pattern.compile("(\\d+)/(\\d+)\\s*=\\s*(\\d+)");
+        Matcher matcher = pattern.matcher(tempoStr);
+        
+        if (matcher.find()) {
+            int numerator = Integer.parseInt(matcher.group(1));
+            int denominator = Integer.parseInt(matcher.group(2));
+            int bpm = Integer.parseInt(matcher.group(3));
+            
+            if (MusicLog.isTracing())
+                MusicLog.d("ABCParser", () -> "Parsed tempo: " + numerator + "/" + denominator + "=" + bpm);
+            return new TempoInfo(bpm, numerator, denominator);
+        }
+        
+        // Simple format "120" - assume quarter notes
+        Pattern simplePattern = Pattern.compile("(\\d+)");
+        Matcher simpleMatcher = simplePattern.matcher(tempoStr);
+        if (simpleMatcher.find()) {
+            int bpm = Integer.parseInt(simpleMatcher.group(1));
+            if (MusicLog.isTracing())
+                MusicLog.d("ABCParser", () -> "Parsed simple tempo: " + bpm + " (assuming 1/4 notes)");
+            return new TempoInfo(bpm, 1, 4);
+        }
+        
+        // Default - quarter notes
+        return new TempoInfo(DEFAULT_TEMPO, 1, 4);
+    }
+    
+
+}
@@ -0,0 +1,131 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.Arrays;
+
+/**
+ * Lines and bar lines of an ABC tune, recorded by {@link ABCParser} while it tokenizes the notes.
+ * Positions are note indexes in the parsed notes, so that whatever follows the structure (tab
+ * layout, repeats) agrees with the parser. Immutable.
+ */
+public class ABCStructure {
+    // Bar line flags
+    public static final int DOUBLE = 1; // || [| |]
+    public static final int REPEAT_START = 2; // |:
+    public static final int REPEAT_END = 4; // :|
+
+    static final ABCStructure EMPTY = new Builder().build();
+
+    private final int[] lineEnds; // per music line, index of the note after its last one
+    private final int[] barNotes; // per bar line, index of the note following it
+    private final int[] barFlags;
+    private final int[] barEndings; // per bar line, number of the ending it opens ([1, :|2), 0 if none
+
+    private ABCStructure(int[] lineEnds, int[] barNotes, int[] barFlags, int[] barEndings) {
+        this.lineEnds = lineEnds;
+        this.barNotes = barNotes;
+        this.barFlags = barFlags;
+        this.barEndings = barEndings;
+    }
+
+    public int getLineCount() {
+        return lineEnds.length;
+    }
+
+    /**
+     * @return the index of the first note of a line
+     */
+    public int getLineStart(int line) {
+        return line > 0 ? lineEnds[line - 1] : 0;
+    }
+
+    /**
+     * @return the index of the note after the last one of a line
+     */
+    public int getLineEnd(int line) {
+        return lineEnds[line];
+    }
+
+    public int getNoteCount() {
+        return lineEnds.length > 0 ? lineEnds[lineEnds.length - 1] : 0;
+    }
+
+    public int getBarCount() {
+        return barNotes.length;
+    }
+
+    /**
+     * @return the index of the note following a bar line
+     */
+    public int getBarNote(int bar) {
+        return barNotes[bar];
+    }
+
+    public int getBarFlags(int bar) {
+        return barFlags[bar];
+    }
+
+    /**
+     * @return the number of the ending opened at a bar line, 0 if none
+     */
+    public int getEnding(int bar) {
+        return barEndings[bar];
+    }
+
+    /**
+     * Collects the structure as the parser goes through the tune.
+     */
+    static class Builder {
+        private int[] lineEnds = new int[16];
+        private int lineCount = 0;
+        private int[] barNotes = new int[64], barFlags = new int[64], barEndings = new int[64];
+        private int barCount = 0;
+
+        /**
+         * End the current line, its last note being before index note.
+         */
+        void endLine(int note) {
+            if (lineCount == lineEnds.length)
+                lineEnds = Arrays.copyOf(lineEnds, 2 * lineCount);
+            lineEnds[lineCount++] = note;
+        }
+
+        void addBar(int note, int flags) {
+            if (barCount == barNotes.length) {
+                barNotes = Arrays.copyOf(barNotes, 2 * barCount);
+                barFlags = Arrays.copyOf(barFlags, 2 * barCount);
+                barEndings = Arrays.copyOf(barEndings, 2 * barCount);
+            }
+            barNotes[barCount] = note;
+            barFlags[barCount] = flags;
+            barEndings[barCount] = 0;
+            barCount++;
+        }
+
+        /**
+         * Open an ending before index note: on the bar line there if any ("|1", "| [1"),
+         * else on a new bar line without flags.
+         */
+        void addEnding(int note, int ending) {
+            if (barCount == 0 || barNotes[barCount - 1] != note)
+                addBar(note, 0);
+            barEndings[barCount - 1] = ending;
+        }
+
+        /**
+         * Append a structure parsed separately, its note indexes shifted by offset.
+         */
+        void append(ABCStructure structure, int offset) {
+            for (int line = 0; line < structure.getLineCount(); ++line)
+                endLine(structure.getLineEnd(line) + offset);
+            for (int bar = 0; bar < structure.getBarCount(); ++bar) {
+                addBar(structure.getBarNote(bar) + offset, structure.getBarFlags(bar));
+                barEndings[barCount - 1] = structure.getEnding(bar);
+            }
+        }
+
+        ABCStructure build() {
+            return new ABCStructure(Arrays.copyOf(lineEnds, lineCount), Arrays.copyOf(barNotes, barCount),
+                    Arrays.copyOf(barFlags, barCount), Arrays.copyOf(barEndings, barCount));
+        }
+    }
+}
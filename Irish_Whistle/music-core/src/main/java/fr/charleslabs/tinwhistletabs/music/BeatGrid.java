@@ -0,0 +1,119 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Beats of a tune for the metronome: beats per bar from its M: meter, beat length from its Q: tempo,
+ * first downbeat on its first bar line, after the pickup notes if any.
+ * Compound meters (6/8, 9/8, 12/8...) beat in dotted quarters, the others in the meter unit.
+ */
+public class BeatGrid {
+    /**
+     * 4/4 with a beat at the default tempo, for tunes without ABC.
+     */
+    public static final BeatGrid DEFAULT = new BeatGrid(4, 60000f / MusicSettings.DEFAULT_TEMPO);
+
+    private static final Pattern METER = Pattern.compile("(\\d+(?:\\s*\\+\\s*\\d+)*)\\s*/\\s*(\\d+)");
+
+    private final int beatsPerBar; // 0 for free meter, without accents
+    private final float beatMs; // at tempo modifier 1
+    private final int pickupNotes; // notes before the first bar line
+
+    BeatGrid(int beatsPerBar, float beatMs) {
+        this(beatsPerBar, beatMs, 0);
+    }
+
+    BeatGrid(int beatsPerBar, float beatMs, int pickupNotes) {
+        this.beatsPerBar = beatsPerBar;
+        this.beatMs = beatMs;
+        this.pickupNotes = pickupNotes;
+    }
+
+    public int getBeatsPerBar() {
+        return beatsPerBar;
+    }
+
+    public float getBeatMs() {
+        return beatMs;
+    }
+
+    /**
+     * @return the number of notes before the first downbeat
+     */
+    public int getPickupNotes() {
+        return pickupNotes;
+    }
+
+    /**
+     * Read the grid from the M: and Q: fields of the ABC header, with the parser's defaults, and
+     * the first downbeat from the first bar line of its structure (null if unknown).
+     */
+    public static BeatGrid of(String abc, ABCStructure structure) {
+        final BeatGrid grid = of(abc);
+        if (structure == null || structure.getBarCount() == 0 || structure.getBarNote(0) == 0)
+            return grid;
+        return new BeatGrid(grid.beatsPerBar, grid.beatMs, structure.getBarNote(0));
+    }
+
+    /**
+     * Read the grid from the M: and Q: fields of the ABC header, with the parser's defaults.
+     */
+    public static BeatGrid of(String abc) {
+        if (abc == null)
+            return DEFAULT;
+
+        String meter = "4/4";
+        ABCParser.TempoInfo tempo = ABCParser.State.INITIAL.tempoInfo;
+        boolean hasMeter = false, hasTempo = false;
+        int lineStart = 0;
+        while (lineStart < abc.length() && !(hasMeter && hasTempo)) {
+            int lineEnd = abc.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = abc.length();
+            final char field = ABCParser.headerField(abc, lineStart, lineEnd);
+            final String value = field != 0 ? abc.substring(abc.indexOf(':', lineStart) + 1, lineEnd).trim() : null;
+            if (field == 'M' && !hasMeter) {
+                meter = value;
+                hasMeter = true;
+            } else if (field == 'Q' && !hasTempo) {
+                try {
+                    tempo = ABCParser.parseTempo(value, 0);
+                } catch (RuntimeException ignored) {}
+                hasTempo = true;
+            } else if (field == 'K') {
+                break; // End of header
+            }
+            lineStart = lineEnd + 1;
+        }
+        return of(meter, tempo.wholeNoteMs());
+    }
+
+    static BeatGrid of(String meter, double wholeNoteMs) {
+        int numerator = 0, denominator = 0;
+        if (meter.equals("C")) {
+            numerator = 4;
+            denominator = 4;
+        } else if (meter.equals("C|")) {
+            numerator = 2;
+            denominator = 2;
+        } else {
+            final Matcher matcher = METER.matcher(meter);
+            try {
+                if (matcher.find()) {
+                    for (String part : matcher.group(1).split("\\+"))
+                        numerator += Integer.parseInt(part.trim());
+                    denominator = Integer.parseInt(matcher.group(2));
+                }
+            } catch (NumberFormatException e) {
+                numerator = 0;
+            }
+        }
+
+        // Free meter: quarter beats, no bars
+        if (numerator <= 0 || denominator <= 0)
+            return new BeatGrid(0, (float) (wholeNoteMs / 4));
+        if (denominator >= 8 && numerator > 3 && numerator % 3 == 0)
+            return new BeatGrid(numerator / 3, (float) (wholeNoteMs * 3 / denominator));
+        return new BeatGrid(numerator, (float) (wholeNoteMs / denominator));
+    }
+}
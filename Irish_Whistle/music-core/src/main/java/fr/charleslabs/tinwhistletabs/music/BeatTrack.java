@@ -0,0 +1,123 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+/**
+ * Metronome clicks mixed into audio at exact sample offsets: beat k starts at sample
+ * round(origin + k * period), computed from k rather than accumulated, so clicks never drift.
+ * Beat 0 is the first downbeat; beats of a pickup before it have negative indexes.
+ * The first beat of each bar is accented. Mixing allocates nothing.
+ */
+public class BeatTrack {
+    private static final float CLICK_DURATION = 0.05f; // s
+    private static final float CLICK_FREQUENCY = 1000f, ACCENT_FREQUENCY = 1500f;
+    private static final float CLICK_VOLUME = 0.3f, ACCENT_VOLUME = 0.45f;
+
+    private final float[] click;
+    private final float[] accent;
+    private final double period; // samples per beat
+    private final double origin; // sample of beat 0
+    private final int beatsPerBar;
+    private final long firstBeat; // index of the first beat at or after sample 0
+    private final long endSample; // no beat starts from there on
+
+    /**
+     * Clicks along a tune, at the Q: tempo, from its first downbeat; the beats of a pickup count
+     * back from it.
+     */
+    public BeatTrack(BeatGrid grid, float tempoModifier, TimingIndex timing) {
+        this.period = grid.getBeatMs() / tempoModifier * timing.getSampleRate() / 1000.0;
+        this.origin = timing.getStart(Math.min(grid.getPickupNotes(), timing.getNoteCount()));
+        this.firstBeat = -(long) Math.floor(origin / period);
+        this.endSample = timing.getTotalSamples();
+        this.beatsPerBar = grid.getBeatsPerBar();
+        this.click = genClick(CLICK_FREQUENCY, CLICK_VOLUME, timing.getSampleRate());
+        this.accent = genClick(ACCENT_FREQUENCY, ACCENT_VOLUME, timing.getSampleRate());
+    }
+
+    /**
+     * Endless clicks, for the metronome on its own.
+     */
+    public BeatTrack(BeatGrid grid, float tempoModifier, int sampleRate) {
+        this.period = grid.getBeatMs() / tempoModifier * sampleRate / 1000.0;
+        this.origin = 0;
+        this.firstBeat = 0;
+        this.endSample = Long.MAX_VALUE;
+        this.beatsPerBar = grid.getBeatsPerBar();
+        this.click = genClick(CLICK_FREQUENCY, CLICK_VOLUME, sampleRate);
+        this.accent = genClick(ACCENT_FREQUENCY, ACCENT_VOLUME, sampleRate);
+    }
+
+    /**
+     * @return the sample beat k starts at
+     */
+    public long getBeatStart(long k) {
+        return Math.round(origin + k * period);
+    }
+
+    public boolean isAccented(long k) {
+        return beatsPerBar > 0 && Math.floorMod(k, beatsPerBar) == 0;
+    }
+
+    /**
+     * @return the index of the first beat, at or after sample 0
+     */
+    public long getFirstBeat() {
+        return firstBeat;
+    }
+
+    /**
+     * @return the index of the last beat ringing out before start, or the first beat
+     */
+    private long fromBeat(long start) {
+        return Math.max(firstBeat, (long) Math.floor((start - click.length - origin) / period));
+    }
+
+    /**
+     * Add the clicks sounding in the first length samples of pcm, which start at sample start,
+     * saturating instead of wrapping around.
+     */
+    public void mix(short[] pcm, long start, int length) {
+        for (long k = fromBeat(start); ; ++k) {
+            final long beat = getBeatStart(k);
+            if (beat >= start + length || beat >= endSample)
+                break;
+            final float[] sound = isAccented(k) ? accent : click;
+            final int offset = (int) Math.max(0, beat - start);
+            final int from = (int) (start + offset - beat);
+            final int count = Math.min(length - offset, sound.length - from);
+            for (int i = 0; i < count; ++i) {
+                final int value = pcm[offset + i] + (int) (sound[from + i] * 32767);
+                pcm[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+        }
+    }
+
+    /**
+     * Add the clicks sounding in the first length samples of out, which start at sample start,
+     * clipped to full scale.
+     */
+    public void mix(float[] out, long start, int length) {
+        for (long k = fromBeat(start); ; ++k) {
+            final long beat = getBeatStart(k);
+            if (beat >= start + length || beat >= endSample)
+                break;
+            final float[] sound = isAccented(k) ? accent : click;
+            final int offset = (int) Math.max(0, beat - start);
+            final int from = (int) (start + offset - beat);
+            final int count = Math.min(length - offset, sound.length - from);
+            for (int i = 0; i < count; ++i)
+                out[offset + i] = Math.max(-1f, Math.min(1f, out[offset + i] + sound[from + i]));
+        }
+    }
+
+    /**
+     * Short sine beep fading out.
+     */
+    private static float[] genClick(float frequency, float volume, int sampleRate) {
+        final float[] sound = new float[(int) (CLICK_DURATION * sampleRate)];
+        for (int i = 0; i < sound.length; ++i) {
+            final float envelope = 1f - (float) i / sound.length;
+            sound[i] = (float) Math.sin(2.0 * Math.PI * i * frequency / sampleRate) * envelope * volume;
+        }
+        return sound;
+    }
+}
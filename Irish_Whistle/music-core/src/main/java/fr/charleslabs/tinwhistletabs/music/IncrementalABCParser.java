@@ -0,0 +1,217 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ABC parser for a text being edited, fed with the edits from TextWatcher.onTextChanged.
+ * The parse state (key signature, unit length, tempo) is kept per line: an edit re-tokenizes the
+ * lines it touches, then the following lines only as long as the state they inherit has changed
+ * (e.g. after editing the K: header).
+ */
+public class IncrementalABCParser {
+    private static class Line {
+        final String text;
+        final char header; // 0 if not a header
+        ABCParser.State before, after;
+        final List<MusicNote> notes = new ArrayList<>();
+        ABCStructure structure = ABCStructure.EMPTY; // note indexes in notes
+        ABCParser.PitchSet pitches = new ABCParser.PitchSet();
+        String error = null;
+
+        Line(String text) {
+            this.text = text;
+            this.header = ABCParser.headerField(text, 0, text.length());
+        }
+    }
+
+    private final List<Line> lines = new ArrayList<>();
+    private int noteCount = 0;
+    private int transposition = 0;
+    private boolean isTranspositionValid = false;
+
+    public IncrementalABCParser() {
+        lines.add(new Line(""));
+        reparse(0, 1);
+    }
+
+    /**
+     * Replace the whole text.
+     */
+    public void setText(CharSequence text) {
+        int length = lines.size() - 1;
+        for (Line line : lines)
+            length += line.text.length();
+        edit(text, 0, length, text.length());
+    }
+
+    /**
+     * Apply an edit: the before characters at start were replaced by count characters.
+     * Same arguments as TextWatcher.onTextChanged.
+     * @param text the text after the edit
+     */
+    public void edit(CharSequence text, int start, int before, int count) {
+        // Lines touched in the old text
+        int first = 0, firstStart = 0;
+        while (first < lines.size() - 1 && start > firstStart + lines.get(first).text.length()) {
+            firstStart += lines.get(first).text.length() + 1;
+            first++;
+        }
+        int last = first, lastStart = firstStart;
+        while (last < lines.size() - 1 && start + before > lastStart + lines.get(last).text.length()) {
+            lastStart += lines.get(last).text.length() + 1;
+            last++;
+        }
+
+        // Their replacement in the new text, up to the end of the last line
+        int end = Math.min(start + count, text.length());
+        while (end < text.length() && text.charAt(end) != '\n')
+            end++;
+        final List<Line> replacement = new ArrayList<>();
+        int lineStart = firstStart;
+        for (int i = firstStart; i <= end; ++i) {
+            if (i == end || text.charAt(i) == '\n') {
+                replacement.add(new Line(text.subSequence(lineStart, i).toString()));
+                lineStart = i + 1;
+            }
+        }
+
+        final List<Line> replaced = lines.subList(first, last + 1);
+        for (Line line : replaced)
+            noteCount -= line.notes.size();
+        replaced.clear();
+        lines.addAll(first, replacement);
+        reparse(first, first + replacement.size());
+    }
+
+    /**
+     * Parse the lines from the first changed one, up to the end of the changed ones and then
+     * until a line inherits the same state as it did before.
+     */
+    private void reparse(int from, int changedEnd) {
+        ABCParser.State state = from > 0 ? lines.get(from - 1).after : ABCParser.State.INITIAL;
+        for (int i = from; i < lines.size(); ++i) {
+            final Line line = lines.get(i);
+            if (i >= changedEnd && line.before.sameAs(state))
+                break;
+
+            noteCount -= line.notes.size();
+            line.before = state;
+            line.notes.clear();
+            line.error = null;
+            final ABCStructure.Builder structure = new ABCStructure.Builder();
+            try {
+                line.after = ABCParser.parseLine(line.text, 0, line.text.length(), state, null, line.notes,
+                        structure);
+            } catch (Exception e) {
+                line.error = e.getMessage();
+                line.after = state;
+            }
+            line.structure = structure.build();
+            line.pitches = new ABCParser.PitchSet();
+            line.pitches.addAll(line.notes);
+            noteCount += line.notes.size();
+
+            state = line.after;
+        }
+        isTranspositionValid = false;
+    }
+
+    public int getNoteCount() {
+        return noteCount;
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * @return the index of the line containing the given character offset
+     */
+    public int getLineAt(int offset) {
+        int line = 0, lineStart = 0;
+        while (line < lines.size() - 1 && offset > lineStart + lines.get(line).text.length()) {
+            lineStart += lines.get(line).text.length() + 1;
+            line++;
+        }
+        return line;
+    }
+
+    /**
+     * @return the first error, prefixed by its line number, or null
+     */
+    public String getError() {
+        for (int i = 0; i < lines.size(); ++i)
+            if (lines.get(i).error != null)
+                return "Line " + (i + 1) + ": " + lines.get(i).error;
+        return null;
+    }
+
+    /**
+     * @return the value of the first header of the given field (e.g. 'T' for the title), or null
+     */
+    public String getHeader(char field) {
+        for (Line line : lines) {
+            if (line.header == field) {
+                final String text = line.text.trim();
+                return text.substring(2).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the shift applied to bring the tune into the whistle range
+     */
+    public int getTransposition() {
+        if (!isTranspositionValid) {
+            final ABCParser.PitchSet pitches = new ABCParser.PitchSet();
+            for (Line line : lines)
+                pitches.addAll(line.pitches);
+            transposition = ABCParser.findTransposition(pitches);
+            isTranspositionValid = true;
+        }
+        return transposition;
+    }
+
+    /**
+     * @return the tabs of a line, as they will appear in the tune
+     */
+    public String getTabs(int line) {
+        final List<MusicNote> notes = new ArrayList<>(lines.get(line).notes.size());
+        for (MusicNote note : lines.get(line).notes)
+            notes.add(new MusicNote(note));
+        ABCParser.transposeNotes(notes, getTransposition());
+        return MusicSheet.notesToTabs(notes);
+    }
+
+    /**
+     * @return the whole tune, same as {@link ABCParser#parse} of the text
+     * @throws Exception on the first error, or if there are no notes
+     */
+    public ABCParser.ABCParseResult getResult() throws Exception {
+        final String error = getError();
+        if (error != null)
+            throw new Exception(error);
+
+        final ABCParser.ABCParseResult result = new ABCParser.ABCParseResult();
+        final ABCStructure.Builder structure = new ABCStructure.Builder();
+        ABCParser.State state = ABCParser.State.INITIAL;
+        for (Line line : lines) {
+            if (line.header != 0) {
+                state = ABCParser.parseLine(line.text, 0, line.text.length(), state, result, result.notes, null);
+            } else {
+                structure.append(line.structure, result.notes.size());
+                // Copies: the notes get transposed
+                for (MusicNote note : line.notes)
+                    result.notes.add(new MusicNote(note));
+            }
+        }
+        if (result.notes.isEmpty())
+            throw new Exception("No notes found in ABC notation");
+
+        result.structure = structure.build();
+        ABCParser.transposeNotes(result.notes, getTransposition());
+        return result;
+    }
+}
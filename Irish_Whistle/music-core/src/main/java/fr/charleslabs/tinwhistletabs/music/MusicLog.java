@@ -0,0 +1,139 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Logging and metrics entry point of the music core, forwarding to the installed {@link MusicLogger}.
+ * Tracing (verbose and debug logs, counters and timers) is off unless enabled with
+ * {@link #setTracing}, in debug builds: messages are then given as suppliers, only called when
+ * tracing, so that a disabled trace builds no string.
+ * <p>
+ * The switch is read at run time, not a compile-time constant: this is a plain Java library,
+ * without BuildConfig, and the benchmarks turn tracing on and off. It is a plain field, set once
+ * at startup before the music threads run, so a disabled trace costs a non-volatile read. A
+ * supplier capturing variables is still allocated at the call: such calls are guarded with
+ * {@link #isTracing()}.
+ * Non-instantiatable class.
+ */
+public final class MusicLog {
+    private MusicLog(){}
+
+    private static volatile MusicLogger logger = MusicLogger.NONE;
+    private static boolean isTracing = false; // set at startup, see the class comment
+
+    private static final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Calls and total of a counter or timer.
+     */
+    private static final class Stat {
+        final LongAdder calls = new LongAdder();
+        final LongAdder total = new LongAdder(); // ns for timers
+        final LongAdder items = new LongAdder(); // timers: items processed (notes, samples...)
+        volatile boolean isTimer = false;
+    }
+
+    public static void setLogger(MusicLogger logger) {
+        MusicLog.logger = logger != null ? logger : MusicLogger.NONE;
+    }
+
+    /**
+     * Turn tracing on or off, at startup: threads already running may not see the change.
+     */
+    public static void setTracing(boolean isTracing) {
+        MusicLog.isTracing = isTracing;
+    }
+
+    public static boolean isTracing() {
+        return isTracing;
+    }
+
+    public static void v(String tag, Supplier<String> message) {
+        if (isTracing) logger.log(MusicLogger.VERBOSE, tag, message.get(), null);
+    }
+    public static void d(String tag, Supplier<String> message) {
+        if (isTracing) logger.log(MusicLogger.DEBUG, tag, message.get(), null);
+    }
+    public static void w(String tag, String message) {logger.log(MusicLogger.WARN, tag, message, null);}
+    public static void e(String tag, String message, Throwable throwable) {
+        logger.log(MusicLogger.ERROR, tag, message, throwable);
+    }
+
+    /**
+     * Add delta to a counter.
+     */
+    public static void count(String name, long delta) {
+        if (!isTracing)
+            return;
+        final Stat stat = stat(name);
+        stat.calls.increment();
+        stat.total.add(delta);
+    }
+
+    /**
+     * @return the start time to give to {@link #stopTimer}, 0 when not tracing
+     */
+    public static long startTimer() {
+        return isTracing ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time since startTime, which processed items (notes, samples...) for a throughput.
+     */
+    public static void stopTimer(String name, long startTime, long items) {
+        if (!isTracing || startTime == 0)
+            return;
+        addTime(name, System.nanoTime() - startTime, items);
+    }
+
+    /**
+     * Record a time measured otherwise (e.g. from audio timestamps), in ns.
+     */
+    public static void addTime(String name, long elapsed, long items) {
+        if (!isTracing)
+            return;
+        final Stat stat = stat(name);
+        stat.isTimer = true;
+        stat.calls.increment();
+        stat.total.add(elapsed);
+        stat.items.add(items);
+    }
+
+    private static Stat stat(String name) {
+        final Stat stat = stats.get(name);
+        return stat != null ? stat : stats.computeIfAbsent(name, key -> new Stat());
+    }
+
+    /**
+     * @return one line per counter and timer, sorted by name
+     */
+    public static String dumpMetrics() {
+        final StringBuilder dump = new StringBuilder();
+        for (Map.Entry<String, Stat> entry : new TreeMap<>(stats).entrySet()) {
+            final Stat stat = entry.getValue();
+            final long calls = stat.calls.sum(), total = stat.total.sum();
+            dump.append(entry.getKey()).append(": ").append(calls).append(" calls");
+            if (stat.isTimer) {
+                final long items = stat.items.sum();
+                dump.append(String.format(Locale.ROOT, ", %.2f ms, %.2f ms/call",
+                        total / 1e6, calls > 0 ? total / 1e6 / calls : 0));
+                if (items > 0 && total > 0)
+                    dump.append(String.format(Locale.ROOT, ", %d items, %.0f items/s",
+                            items, items * 1e9 / total));
+            } else {
+                dump.append(", total ").append(total);
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+
+    public static void resetMetrics() {
+        stats.clear();
+    }
+}
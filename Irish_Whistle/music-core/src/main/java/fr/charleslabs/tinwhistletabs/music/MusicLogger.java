@@ -0,0 +1,20 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+/**
+ * Destination of the music core logs. The core does not depend on Android:
+ * the app plugs in a logger backed by android.util.Log with {@link MusicLog#setLogger}.
+ */
+public interface MusicLogger {
+    // Priorities, same values as android.util.Log
+    int VERBOSE = 2, DEBUG = 3, INFO = 4, WARN = 5, ERROR = 6;
+
+    void log(int priority, String tag, String message, Throwable throwable);
+
+    /**
+     * Discards everything. Default logger.
+     */
+    MusicLogger NONE = new MusicLogger() {
+        @Override
+        public void log(int priority, String tag, String message, Throwable throwable) {}
+    };
+}
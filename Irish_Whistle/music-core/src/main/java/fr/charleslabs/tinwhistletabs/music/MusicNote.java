@@ -1,22 +1,56 @@
 package fr.charleslabs.tinwhistletabs.music;
 
 public class MusicNote {
-    private final int duration; //ms
+    // Ticks of a quarter note, so that ABC lengths (1/64 to breves, dotted, triplets, quintuplets) are whole ticks
+    public static final int TICKS_PER_QUARTER = 480;
+    public static final int TICKS_PER_WHOLE = 4 * TICKS_PER_QUARTER;
+
+    private final int ticks;
+    private final double tickMs; // length of a tick at the tempo of the note, ms
     private int pitch = 0; //keynumber, 0=rest
 
     /**
      * Create a musical note.
+     * @param duration length in ms
+     */
+    public MusicNote(int pitch, int duration){
+        this(pitch, duration, 1.0);
+    }
+
+    /**
+     * Create a musical note of an exact length, e.g. a triplet eighth at 120 BPM is 160 ticks of
+     * 60000 / 120 / 480 ms.
      */
-    MusicNote(int pitch, int duration){
-        this.duration = duration;
+    public MusicNote(int pitch, int ticks, double tickMs){
+        this.ticks = ticks;
+        this.tickMs = tickMs;
         this.pitch = pitch;
     }
 
+    MusicNote(MusicNote note){
+        this(note.pitch, note.ticks, note.tickMs);
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public double getTickMs() {
+        return tickMs;
+    }
+
+    /**
+     * @return the exact length of the note at the tempo of the tune, in ms
+     */
+    public double getDurationMs() {
+        return ticks * tickMs;
+    }
+
     public float getLengthInMS(float tempoModifier) {
-        return duration / tempoModifier;
+        return (float) (getDurationMs() / tempoModifier);
     }
 
-    float getLengthInS(float tempoModifier) {
+    public float getLengthInS(float tempoModifier) {
         return getLengthInMS(tempoModifier)/1000f;
     }
 
@@ -25,7 +59,7 @@ public class MusicNote {
             this.pitch += shiftPitch;
     }
 
-    float getFrequency() {
+    public float getFrequency() {
         return  440f * (float)Math.pow(2f, (float)(pitch- 49)/12f);
     }
 
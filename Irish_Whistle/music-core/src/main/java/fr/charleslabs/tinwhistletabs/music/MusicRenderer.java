@@ -0,0 +1,450 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import fr.charleslabs.tinwhistletabs.music.synth.FDNReverb;
+import fr.charleslabs.tinwhistletabs.music.synth.TinWhistleSynth;
+
+/**
+ * Renders a tune block by block, for streaming playback.
+ * Only the note being played is synthesized, so memory does not depend on the tune length.
+ * With a {@link PCMCache}, a tune already rendered is played back from the cache, and a tune
+ * rendered from start to end without seeking is recorded into it.
+ */
+public class MusicRenderer {
+    private static final int SAMPLES_PER_TASK = 1 << 16; // whole tune render, about 3 s of notes per task
+    private static final int SAMPLES_PER_WINDOW = 16 * SAMPLES_PER_TASK; // whole tune render, samples held at once
+    private static final int DITHER_SEED = 0x2545F491;
+    private static final float DITHER_SCALE = 1f / 0x10000;
+
+    private final float[] frequencies; // 0 = rest
+    private final int[] lengths; // samples
+    private final int totalSamples;
+    private final TimingIndex timing;
+    private final float tempoModifier;
+    private final int sampleRate;
+    private final float[] noteBuffer;
+    private final FDNReverb reverb;
+    private float[] block = null;
+    private volatile BeatTrack beats = null;
+
+    // Cache
+    private final PCMCache cache;
+    private final String cacheKey;
+    private boolean isCacheChecked = false;
+    private short[] cached = null;
+    private short[] recording = null;
+
+    // Position
+    private int noteIndex = 0;
+    private int notePos = 0;
+    private int samplePos = 0;
+    private int bufferedNote = -1;
+    private int ditherSeed = DITHER_SEED; // 0 without dither
+    private int loopStart = -1, loopEnd = -1; // samples, -1 without loop
+
+    public MusicRenderer(List<MusicNote> notes, float tempoModifier, int sampleRate) {
+        this(notes, tempoModifier, sampleRate, null, null);
+    }
+
+    public MusicRenderer(List<MusicNote> notes, float tempoModifier, int sampleRate, PCMCache cache, String cacheKey) {
+        this.sampleRate = sampleRate;
+        this.tempoModifier = tempoModifier;
+        this.frequencies = new float[notes.size()];
+        this.lengths = new int[notes.size()];
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+        this.timing = new TimingIndex(notes, tempoModifier, sampleRate);
+
+        int longest = 0;
+        for (int i = 0; i < notes.size(); ++i) {
+            final MusicNote note = notes.get(i);
+            frequencies[i] = note.isRest() ? 0 : note.getFrequency();
+            lengths[i] = timing.getLength(i);
+            longest = Math.max(longest, lengths[i]);
+        }
+        this.totalSamples = timing.getTotalSamples();
+        this.noteBuffer = new float[longest];
+        this.reverb = new FDNReverb(sampleRate);
+    }
+
+    /**
+     * @return the start of every note at the tempo rendered
+     */
+    public TimingIndex getTiming() {
+        return timing;
+    }
+
+    public float getTempoModifier() {
+        return tempoModifier;
+    }
+
+    /**
+     * Metronome clicks added by renderPCM (after caching), null for none. May be set while playing.
+     */
+    public void setBeats(BeatTrack beats) {
+        this.beats = beats;
+    }
+
+    /**
+     * Dither the 16 bit samples of renderPCM (on by default).
+     */
+    public void setDither(boolean dither) {
+        ditherSeed = dither ? DITHER_SEED : 0;
+    }
+
+    /**
+     * @return the sample the next render starts from
+     */
+    public int getPosition() {
+        return samplePos;
+    }
+
+    /**
+     * Fill block with the next samples of the tune.
+     * @return the number of samples written, less than block.length once the tune ends
+     */
+    public int render(float[] block) {
+        final long startTime = MusicLog.startTimer();
+        final int length = toLoopEnd(block.length);
+        int filled = 0;
+        while (filled < length && noteIndex < lengths.length) {
+            final int count = Math.min(length - filled, lengths[noteIndex] - notePos);
+
+            if (frequencies[noteIndex] == 0) {
+                for (int i = 0; i < count; ++i)
+                    block[filled + i] = 0;
+            } else {
+                if (bufferedNote != noteIndex) {
+                    final long noteStartTime = MusicLog.startTimer();
+                    TinWhistleSynth.genNote(frequencies[noteIndex], lengths[noteIndex], noteBuffer, 0, sampleRate);
+                    MusicLog.stopTimer("synth.note", noteStartTime, 1);
+                    bufferedNote = noteIndex;
+                }
+                System.arraycopy(noteBuffer, notePos, block, filled, count);
+            }
+
+            filled += count;
+            notePos += count;
+            if (notePos >= lengths[noteIndex]) {
+                noteIndex++;
+                notePos = 0;
+            }
+        }
+
+        reverb.process(block, filled);
+        samplePos += filled;
+        MusicLog.stopTimer("synth.block", startTime, filled);
+        return filled;
+    }
+
+    /**
+     * Look the tune up in the cache, reading the disk if needed. Done by the first renderPCM
+     * otherwise, so that the tune can be prepared on a background thread before playing.
+     */
+    public void loadCache() {
+        if (isCacheChecked)
+            return;
+        isCacheChecked = true;
+        if (cache != null && cacheKey != null) {
+            cached = cache.get(cacheKey);
+            if (cached == null && samplePos == 0 && cache.accepts(totalSamples))
+                recording = new short[totalSamples];
+        }
+    }
+
+    /**
+     * Fill pcm with the next 16 bit samples of the tune, from the cache when possible, and add
+     * the metronome clicks if any.
+     * Meant to be called from the playback thread: the first call may read the disk cache.
+     * @return the number of samples written, less than pcm.length once the tune ends
+     */
+    public int renderPCM(short[] pcm) {
+        loadCache();
+
+        final int length = toLoopEnd(pcm.length);
+        final int start = samplePos;
+        final int count;
+        if (cached != null) {
+            count = Math.max(0, Math.min(length, cached.length - samplePos));
+            System.arraycopy(cached, samplePos, pcm, 0, count);
+            samplePos += count;
+        } else {
+            if (block == null || block.length != pcm.length)
+                block = new float[pcm.length];
+            count = render(block);
+            ditherSeed = toPCM16(block, pcm, 0, count, ditherSeed);
+
+            if (recording != null) {
+                System.arraycopy(pcm, 0, recording, start, count);
+                if (samplePos >= totalSamples) {
+                    cache.put(cacheKey, recording);
+                    recording = null;
+                }
+            }
+        }
+
+        final BeatTrack beats = this.beats;
+        if (beats != null)
+            beats.mix(pcm, start, count);
+        return count;
+    }
+
+    /**
+     * Fill out with the next samples of the tune, clipped to full scale, for a float output
+     * track: as {@link #renderPCM(short[])}, without the 16 bit conversion. The cache holds
+     * 16 bit PCM whatever the output.
+     * @return the number of samples written, less than out.length once the tune ends
+     */
+    public int renderPCM(float[] out) {
+        loadCache();
+
+        final int length = toLoopEnd(out.length);
+        final int start = samplePos;
+        final int count;
+        if (cached != null) {
+            count = Math.max(0, Math.min(length, cached.length - samplePos));
+            for (int i = 0; i < count; ++i)
+                out[i] = cached[samplePos + i] * (1f / 32767);
+            samplePos += count;
+        } else {
+            count = render(out);
+            for (int i = 0; i < count; ++i)
+                out[i] = Math.max(-1f, Math.min(1f, out[i]));
+
+            if (recording != null) {
+                toPCM16(out, recording, start, count, 0);
+                if (samplePos >= totalSamples) {
+                    cache.put(cacheKey, recording);
+                    recording = null;
+                }
+            }
+        }
+
+        final BeatTrack beats = this.beats;
+        if (beats != null)
+            beats.mix(out, start, count);
+        return count;
+    }
+
+    /**
+     * Move the render position to the given time.
+     */
+    public void seek(float time) {
+        jumpTo(Math.max(0, (int)(time*sampleRate)));
+        reverb.reset();
+        recording = null;
+        isCacheChecked = cached != null;
+    }
+
+    /**
+     * Play notes fromNote to toNote (excluded) over and over, once the render position reaches
+     * them, or stop looping (fromNote -1). Blocks stop at the loop end, the next one starts over
+     * from the loop start with the reverb tail carried on.
+     */
+    public void setLoop(int fromNote, int toNote) {
+        final int start = fromNote >= 0 ? timing.getStart(Math.min(fromNote, lengths.length)) : -1;
+        final int end = fromNote >= 0 ? timing.getStart(Math.min(toNote, lengths.length)) : -1;
+        if (end > start) {
+            loopStart = start;
+            loopEnd = end;
+            recording = null;
+        } else {
+            loopStart = loopEnd = -1;
+        }
+    }
+
+    /**
+     * @return the first sample of the loop, -1 without loop
+     */
+    public int getLoopStart() {
+        return loopStart;
+    }
+
+    /**
+     * @return the sample after the loop, -1 without loop
+     */
+    public int getLoopEnd() {
+        return loopEnd;
+    }
+
+    /**
+     * Go back to the loop start when at its end.
+     * @return how many of length samples to render before the loop end
+     */
+    private int toLoopEnd(int length) {
+        if (loopEnd < 0 || samplePos > loopEnd)
+            return length;
+        if (samplePos == loopEnd)
+            jumpTo(loopStart);
+        return Math.min(length, loopEnd - samplePos);
+    }
+
+    private void jumpTo(int sample) {
+        noteIndex = timing.getNoteAt(sample);
+        notePos = noteIndex < lengths.length ? sample - timing.getStart(noteIndex) : 0;
+        samplePos = timing.getStart(noteIndex) + notePos;
+    }
+
+    /**
+     * Move the render position to the start of the given note.
+     */
+    public void seekToNote(int index) {
+        noteIndex = Math.max(0, Math.min(index, lengths.length));
+        notePos = 0;
+        samplePos = timing.getStart(noteIndex);
+        reverb.reset();
+        recording = null;
+        isCacheChecked = cached != null;
+    }
+
+    /**
+     * Convert normalised samples to 16 bit PCM, rounded and clipped to full scale.
+     */
+    public static void toPCM16(float[] samples, short[] pcm, int length) {
+        toPCM16(samples, pcm, 0, length, 0);
+    }
+
+    /**
+     * Convert normalised samples to 16 bit PCM at pcm[offset], clipped to full scale rather than
+     * wrapping around. With a non zero dither seed, triangular (TPDF) noise of up to one step is
+     * added before rounding, so that quiet sounds (reverb tails, fades) turn into faint noise
+     * instead of distortion.
+     * @return the seed to carry on the dither with, 0 without dither
+     */
+    public static int toPCM16(float[] samples, short[] pcm, int offset, int length, int ditherSeed) {
+        if (ditherSeed == 0) {
+            for (int i = 0; i < length; ++i) {
+                final int value = Math.round(samples[i] * 32767);
+                pcm[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+            return 0;
+        }
+
+        int x = ditherSeed;
+        for (int i = 0; i < length; ++i) {
+            // Difference of two 16 bit uniform values: triangular in (-1, 1)
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            final float dither = ((x >>> 16) + (x & 0xFFFF) - 0xFFFF) * DITHER_SCALE;
+            final int value = (int) Math.floor(samples[i] * 32767 + dither + 0.5f);
+            pcm[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+        return x;
+    }
+
+    /**
+     * Render a whole tune at once, reverb included, as dithered 16 bit PCM.
+     */
+    public static short[] genMusic(List<MusicNote> notes, float tempoModifier, int sampleRate){
+        return genMusic(notes, tempoModifier, sampleRate, true);
+    }
+
+    /**
+     * Render a whole tune at once, reverb included, as 16 bit PCM.
+     * The tune is synthesized window by window, each window converted into the PCM as soon as it
+     * is complete: only the PCM is as long as the tune, not its samples.
+     */
+    public static short[] genMusic(List<MusicNote> notes, float tempoModifier, int sampleRate, boolean dither){
+        final TimingIndex timing = new TimingIndex(notes, tempoModifier, sampleRate);
+        final short[] pcm = new short[timing.getTotalSamples()];
+        int longest = 0;
+        for (int i = 0; i < notes.size(); ++i)
+            longest = Math.max(longest, timing.getLength(i));
+
+        // Window, plus the end of the notes starting in it
+        final float[] window = new float[Math.min(SAMPLES_PER_WINDOW + longest, pcm.length)];
+        final FDNReverb reverb = new FDNReverb(sampleRate);
+        int ditherSeed = dither ? DITHER_SEED : 0;
+        int from = 0;
+        for (int start = 0; start < pcm.length; start += SAMPLES_PER_WINDOW) {
+            final int end = Math.min(start + SAMPLES_PER_WINDOW, pcm.length);
+            int to = timing.getNoteAt(end);
+            if (to < notes.size() && timing.getStart(to) < end)
+                to++;
+            synthesize(notes, timing, sampleRate, window, start, from, to);
+
+            // The reverb carries state from sample to sample: serial
+            reverb.process(window, end - start);
+            ditherSeed = toPCM16(window, pcm, start, end - start, ditherSeed);
+
+            // Keep the notes ringing past the window for the next one
+            System.arraycopy(window, end - start, window, 0, window.length - (end - start));
+            Arrays.fill(window, window.length - (end - start), window.length, 0);
+            from = to;
+        }
+        return pcm;
+    }
+
+    /**
+     * Synthesize the notes of a whole tune, without reverb.
+     */
+    static float[] synthesize(List<MusicNote> notes, TimingIndex timing, int sampleRate) {
+        final float[] music = new float[timing.getTotalSamples()];
+        synthesize(notes, timing, sampleRate, music, 0, 0, notes.size());
+        return music;
+    }
+
+    /**
+     * Synthesize notes from to to into music, whose first sample is sample base of the tune.
+     * Each note writes its own range of samples only, so ranges of notes are synthesized in
+     * parallel on the common fork-join pool, with the same result as one after the other.
+     */
+    private static void synthesize(List<MusicNote> notes, TimingIndex timing, int sampleRate,
+                                   float[] music, int base, int from, int to) {
+        if (from >= to)
+            return;
+        final long startTime = MusicLog.startTimer();
+        final SynthTask task = new SynthTask(notes, timing, sampleRate, music, base, from, to);
+        if (timing.getStart(to) - timing.getStart(from) <= SAMPLES_PER_TASK)
+            task.compute();
+        else
+            ForkJoinPool.commonPool().invoke(task);
+        MusicLog.stopTimer("synth.tune", startTime, timing.getStart(to) - timing.getStart(from));
+    }
+
+    /**
+     * Synthesize a range of notes, splitting it in two at its middle sample until it is short enough.
+     */
+    private static class SynthTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<MusicNote> notes;
+        private final TimingIndex timing;
+        private final int sampleRate;
+        private final float[] music;
+        private final int base;
+        private final int from, to;
+
+        SynthTask(List<MusicNote> notes, TimingIndex timing, int sampleRate, float[] music, int base, int from, int to) {
+            this.notes = notes;
+            this.timing = timing;
+            this.sampleRate = sampleRate;
+            this.music = music;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            final int start = timing.getStart(from), end = timing.getStart(to);
+            if (end - start <= SAMPLES_PER_TASK || to - from == 1) {
+                for (int i = from; i < to; ++i) {
+                    final MusicNote note = notes.get(i);
+                    if (!note.isRest())
+                        TinWhistleSynth.genNote(note.getFrequency(), timing.getLength(i), music,
+                                timing.getStart(i) - base, sampleRate);
+                }
+                return;
+            }
+            final int middle = Math.min(Math.max(timing.getNoteAt((start + end) >>> 1), from + 1), to - 1);
+            invokeAll(new SynthTask(notes, timing, sampleRate, music, base, from, middle),
+                    new SynthTask(notes, timing, sampleRate, music, base, middle, to));
+        }
+    }
+}
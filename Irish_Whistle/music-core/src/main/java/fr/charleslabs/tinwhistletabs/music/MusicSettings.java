@@ -17,6 +17,8 @@ public final class MusicSettings {
     private final static int[] WHISTLE_OFFSET_D = {5,3,2,1,0,-1,-2,-3,-4,-5,-6,-7,-8,-9,-10,-11,-12,-14}; // Offset from High D
     public static String currentKey = DEFAULT_KEY;
     public static boolean isStartDelayed = false;
+    // OUTPUT: float samples rather than 16 bit PCM, for tunes prepared from then on
+    public static boolean isFloatOutput = false;
     // Functions
     public static int getShift(String key){
         return MusicSettings.WHISTLE_OFFSET_D[java.util.Arrays.asList(MusicSettings.WHISTLE_KEYS).indexOf(key)];
@@ -0,0 +1,142 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class MusicSheet implements Serializable {
+    // Allocated at construction
+    private final String title;
+    private final String author;
+    private final String file;
+    private final String type;
+    private final String sheet_author;
+    private final String license ;
+    private final String key;
+
+    private final String whistle;
+
+    private String abc;
+    private transient volatile ABCStructure structure = null; // of the ABC, once parsed
+
+    public MusicSheet(JSONObject jsonObject) throws JSONException {
+        // Mandatory
+        this.title = jsonObject.getString("title");
+        this.file = jsonObject.getString("file");
+        this.type = jsonObject.getString("type");
+        if (jsonObject.has("abc")) this.abc = jsonObject.getString("abc");
+        else this.abc = null;
+
+        // Optional
+        if (jsonObject.has("author")) this.author = jsonObject.getString("author");
+        else this.author = null;
+        if (jsonObject.has("sheet_author")) this.sheet_author = jsonObject.getString("sheet_author");
+        else this.sheet_author = null;
+        if (jsonObject.has("license")) this.license = jsonObject.getString("license");
+        else this.license = null;
+        if (jsonObject.has("key")) this.key = jsonObject.getString("key");
+        else this.key = MusicSettings.DEFAULT_KEY;
+        if (jsonObject.has("whistle")) this.whistle = jsonObject.getString("whistle");
+        else this.whistle = "D";
+    }
+
+    public void transposeKey(final List<MusicNote> notes, final String oldKey, final String newKey){
+        if (!oldKey.equals(newKey)) {
+            final int shift = MusicSettings.getShift(newKey) - MusicSettings.getShift(oldKey);
+            transpose(notes, shift);
+        }
+    }
+
+    private static void transpose(final List<MusicNote> notes, final int shift){
+        if(shift != 0)
+            for(MusicNote note : notes)
+                note.transpose(shift);
+    }
+
+    public static String notesToTabs(final List<MusicNote> notes) {
+        return TabText.of(notes).getText();
+    }
+    
+    public String notesToTabsWithLineBreaks(final List<MusicNote> notes) {
+        return getTabs(notes).getText();
+    }
+    
+    /**
+     * @return the tabs of the notes, with the line breaks of the ABC when there is one
+     */
+    public TabText getTabs(final List<MusicNote> notes) {
+        final ABCStructure structure = getStructure();
+        // Notes saved apart from their ABC (custom songs) may no longer match it
+        if (structure == null || structure.getNoteCount() != notes.size()) {
+            return TabText.of(notes);
+        }
+        
+        final long startTime = MusicLog.startTimer();
+        final TabText tabs = TabText.of(notes, structure);
+        MusicLog.stopTimer("tabs.layout", startTime, notes.size());
+        return tabs;
+    }
+    
+    /**
+     * @return the order in which the notes are played, with the repeats of the ABC when there is one
+     */
+    public PlayOrder getPlayOrder(final List<MusicNote> notes) {
+        final ABCStructure structure = getStructure();
+        if (structure == null || structure.getNoteCount() != notes.size()) {
+            return PlayOrder.of(notes.size());
+        }
+        return PlayOrder.of(structure);
+    }
+    
+    /**
+     * @return the lines and bar lines of the ABC, parsed on first use unless set by the loader,
+     * or null if there is no ABC
+     */
+    public ABCStructure getStructure() {
+        if (structure == null && abc != null && !abc.isEmpty()) {
+            try {
+                structure = ABCParser.parse(abc).structure;
+            } catch (Exception e) {
+                MusicLog.w("MusicSheet", "Invalid ABC for " + file + ": " + e.getMessage());
+                structure = ABCStructure.EMPTY;
+            }
+        }
+        return structure;
+    }
+    
+    /**
+     * Replace the ABC of the tune, once edited, with the structure of its parse: tabs, play
+     * order and metronome then follow the new ABC.
+     */
+    public void setABC(String abc, ABCStructure structure) {
+        this.abc = abc;
+        this.structure = structure;
+    }
+
+    /**
+     * Keep the structure of a parse of the ABC, so that the tune is only tokenized once.
+     */
+    public void setStructure(ABCStructure structure) {
+        this.structure = structure;
+    }
+
+    // Filter
+    public boolean filter(final String search){
+        return this.getTitle().toLowerCase().contains(search);
+    }
+
+    // Getter and setters
+    public String getAuthor() {return author;}
+    public String getTitle() {return title;}
+    public String getFile() {return file;}
+    public String getKey() {return key;}
+    public String getType() {return type;}
+    public String getSheetAuthor() {return sheet_author;}
+    public String getLicense() {return license;}
+    public String getABC() {return abc;}
+    public String getWhistle() {
+        return whistle;
+    }
+}
@@ -0,0 +1,218 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of rendered 16 bit PCM tunes, keyed by (sheet file, whistle key shift, tempo modifier).
+ * Two tiers: memory, then raw PCM files under the app cache directory. Both are bounded by their
+ * total size in bytes, the least recently used tunes are evicted first.
+ * The cache directory outlives app updates: keys carry FORMAT_VERSION, so that tunes rendered by
+ * an older synth are never played again, and are evicted as the cache fills up.
+ */
+public class PCMCache {
+    private static final String CACHE_DIR = "pcm";
+    private static final String EXTENSION = ".pcm";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /**
+     * Version of the rendered audio, to bump whenever the synth, reverb, timing or sample
+     * format changes what a tune sounds like.
+     * 1: wavetable synth. 2: exact note timing. 3: FDN reverb. 4: dithered PCM.
+     */
+    static final int FORMAT_VERSION = 4;
+    private static final long MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 64 * 1024 * 1024;
+
+    private final File dir;
+    private final long maxMemoryBytes, maxDiskBytes;
+    private final LinkedHashMap<String, short[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    // Statistics
+    private int memoryHits = 0, diskHits = 0, misses = 0;
+
+    //Singleton
+    private static PCMCache instance;
+    /**
+     * @param cacheDir the app cache directory (Context.getCacheDir())
+     */
+    public static PCMCache getInstance(File cacheDir){
+        if(instance == null){
+            instance = new PCMCache(new File(cacheDir, CACHE_DIR),
+                    MAX_MEMORY_BYTES, MAX_DISK_BYTES);
+        }
+        return instance;
+    }
+
+    PCMCache(File dir, long maxMemoryBytes, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * Build the cache key of a rendered tune. A hash of the notes is included so that an
+     * edited custom song never plays stale audio.
+     */
+    public static String key(String file, int keyShift, float tempoModifier, int sampleRate, List<MusicNote> notes) {
+        int hash = 1;
+        for (MusicNote note : notes) {
+            final long tickMs = Double.doubleToLongBits(note.getTickMs());
+            hash = 31 * (31 * (31 * hash + note.getPitch()) + note.getTicks()) + (int) (tickMs ^ (tickMs >>> 32));
+        }
+        return "v" + FORMAT_VERSION + "_" + file + "_" + keyShift + "_" + Integer.toHexString(Float.floatToIntBits(tempoModifier))
+                + "_" + sampleRate + "_" + Integer.toHexString(hash);
+    }
+
+    /**
+     * @return whether a tune of the given length is small enough to be cached
+     */
+    public boolean accepts(int samples) {
+        return 2L * samples <= maxMemoryBytes / 2;
+    }
+
+    /**
+     * @return the cached PCM, or null on a miss. A disk hit is promoted to the memory tier.
+     */
+    public synchronized short[] get(String key) {
+        short[] pcm = memory.get(key);
+        if (pcm != null) {
+            memoryHits++;
+            return pcm;
+        }
+
+        final File file = new File(dir, key + EXTENSION);
+        if (file.exists()) {
+            try {
+                pcm = readPCM(file);
+                file.setLastModified(System.currentTimeMillis());
+                putInMemory(key, pcm);
+                diskHits++;
+                return pcm;
+            } catch (IOException e) {
+                MusicLog.w("PCMCache", "Failed to read " + file + ": " + e.getMessage());
+                file.delete();
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String key, short[] pcm) {
+        if (!accepts(pcm.length))
+            return;
+        putInMemory(key, pcm);
+        try {
+            if (!dir.exists())
+                dir.mkdirs();
+            writePCM(new File(dir, key + EXTENSION), pcm);
+            trimDisk();
+        } catch (IOException e) {
+            MusicLog.w("PCMCache", "Failed to write " + key + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        final File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+
+    private void putInMemory(String key, short[] pcm) {
+        final short[] previous = memory.put(key, pcm);
+        if (previous != null)
+            memoryBytes -= 2L * previous.length;
+        memoryBytes += 2L * pcm.length;
+
+        final Iterator<Map.Entry<String, short[]>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= 2L * eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private void trimDisk() {
+        final File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        long total = 0;
+        for (File file : files)
+            total += file.length();
+        if (total <= maxDiskBytes)
+            return;
+
+        // Oldest first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= maxDiskBytes)
+                break;
+            total -= file.length();
+            file.delete();
+        }
+    }
+
+    private static short[] readPCM(File file) throws IOException {
+        if (file.length() % 2 != 0)
+            throw new IOException("Truncated file");
+        final byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                final int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0)
+                    throw new IOException("Truncated file");
+                read += count;
+            }
+        }
+        final short[] pcm = new short[bytes.length / 2];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pcm);
+        return pcm;
+    }
+
+    /**
+     * Write to a temporary file renamed once complete: a write cut short (app killed, disk full)
+     * never leaves a truncated tune behind.
+     */
+    private static void writePCM(File file, short[] pcm) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(2 * pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(pcm);
+        final File temp = new File(file.getPath() + TEMP_EXTENSION);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes.array());
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to rename " + temp);
+        }
+    }
+
+    // Statistics
+    public synchronized int getMemoryHits() {return memoryHits;}
+    public synchronized int getDiskHits() {return diskHits;}
+    public synchronized int getMisses() {return misses;}
+    public synchronized long getMemoryBytes() {return memoryBytes;}
+
+    @Override
+    public synchronized String toString() {
+        return "PCMCache: " + memoryHits + " memory hits, " + diskHits + " disk hits, " + misses
+                + " misses, " + memory.size() + " tunes (" + memoryBytes / 1024 + " kB) in memory";
+    }
+}
@@ -0,0 +1,162 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Order in which the notes of a tune are played, repeats and endings expanded: a sequence of
+ * ranges of the written notes, so that a part played twice costs one range and not a copy of its
+ * notes. Positions are indexes in the play order, notes indexes in the written notes.
+ * Immutable.
+ */
+public class PlayOrder {
+    private final int noteCount;
+    private final int[] rangeStarts; // note index
+    private final int[] rangeEnds; // note index, exclusive
+    private final int[] positions; // per range, position of its first note, plus the total
+
+    private PlayOrder(int noteCount, int[] rangeStarts, int[] rangeEnds, int rangeCount) {
+        this.noteCount = noteCount;
+        this.rangeStarts = Arrays.copyOf(rangeStarts, rangeCount);
+        this.rangeEnds = Arrays.copyOf(rangeEnds, rangeCount);
+        this.positions = new int[rangeCount + 1];
+        for (int i = 0; i < rangeCount; ++i)
+            positions[i + 1] = positions[i] + rangeEnds[i] - rangeStarts[i];
+    }
+
+    /**
+     * @return the notes played in the order they are written
+     */
+    public static PlayOrder of(int noteCount) {
+        return new PlayOrder(noteCount, new int[]{0}, new int[]{noteCount}, 1);
+    }
+
+    /**
+     * Expand the repeats and endings of a tune: a part between "|:" (or the start, a double bar,
+     * a previous repeat) and ":|" is played twice, ending n ("[1", ":|2") on the n-th time only.
+     */
+    public static PlayOrder of(ABCStructure structure) {
+        final int noteCount = structure.getNoteCount();
+        int[] starts = new int[8], ends = new int[8];
+        int count = 0;
+
+        int partStart = 0, partBar = 0; // note and first bar line of the repeated part
+        int pass = 1;
+        boolean isPlaying = true;
+        int from = 0;
+        int bar = 0;
+        while (bar <= structure.getBarCount()) {
+            final boolean isEnd = bar == structure.getBarCount();
+            final int note = isEnd ? noteCount : structure.getBarNote(bar);
+
+            // Notes since the previous bar line, merged with the previous range when they follow it
+            if (isPlaying && note > from) {
+                if (count > 0 && ends[count - 1] == from) {
+                    ends[count - 1] = note;
+                } else {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, 2 * count);
+                        ends = Arrays.copyOf(ends, 2 * count);
+                    }
+                    starts[count] = from;
+                    ends[count] = note;
+                    count++;
+                }
+            }
+            from = note;
+            if (isEnd)
+                break;
+
+            final int flags = structure.getBarFlags(bar);
+            if ((flags & ABCStructure.REPEAT_END) != 0 && pass == 1) {
+                // Back to the start of the part, for the second time
+                pass = 2;
+                isPlaying = true;
+                from = partStart;
+                bar = partBar;
+                continue;
+            }
+
+            // An ending plays on its pass, and lasts until the next ending or the end of the part
+            final boolean isPartEnd = (flags & (ABCStructure.REPEAT_END | ABCStructure.REPEAT_START
+                    | ABCStructure.DOUBLE)) != 0;
+            final int ending = structure.getEnding(bar);
+            if (ending != 0)
+                isPlaying = ending == pass;
+            else if (isPartEnd)
+                isPlaying = true;
+
+            if (isPartEnd) {
+                partStart = note;
+                partBar = bar + 1;
+                pass = 1;
+            }
+            bar++;
+        }
+        return new PlayOrder(noteCount, starts, ends, count);
+    }
+
+    /**
+     * @return the number of written notes
+     */
+    public int getNoteCount() {
+        return noteCount;
+    }
+
+    /**
+     * @return the number of notes played
+     */
+    public int size() {
+        return positions[positions.length - 1];
+    }
+
+    /**
+     * @return the written note played at a position
+     */
+    public int getNote(int position) {
+        // Last range starting at or before the position
+        int low = 0, high = rangeStarts.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (positions[middle] <= position)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return rangeStarts[low] + position - positions[low];
+    }
+
+    /**
+     * @return the first position at which a written note is played; for a note never played
+     * (e.g. in an ending past the second), that of the first note played after it, or size()
+     */
+    public int getPosition(int note) {
+        int next = size();
+        for (int i = 0; i < rangeStarts.length; ++i) {
+            if (note >= rangeStarts[i] && note < rangeEnds[i])
+                return positions[i] + note - rangeStarts[i];
+            if (rangeStarts[i] > note && positions[i] < next)
+                next = positions[i];
+        }
+        return next;
+    }
+
+    /**
+     * @return the notes in play order, a view of notes: nothing is copied, and changes to the
+     * notes (e.g. transposition) are seen through it
+     */
+    public List<MusicNote> apply(final List<MusicNote> notes) {
+        return new AbstractList<MusicNote>() {
+            @Override
+            public MusicNote get(int position) {
+                return notes.get(getNote(position));
+            }
+
+            @Override
+            public int size() {
+                return PlayOrder.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tabs of a tune, with the offset of each note in the text, so that the playback cursor, taps on
+ * the tabs and clicks on the sheet go from note to character and back without scanning the text.
+ * A note shown takes one character; a rest, or a note left out of the text, takes none and is
+ * placed where the next character goes.
+ */
+public class TabText {
+    private final String text;
+    private final int[] starts; // per note
+    private final int[] ends; // per note, start + 1 if shown, start otherwise
+
+    private TabText(String text, int[] starts, int[] ends) {
+        this.text = text;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getNoteCount() {
+        return starts.length;
+    }
+
+    /**
+     * @return the offset of the character of a note
+     */
+    public int getStart(int note) {
+        return starts[note];
+    }
+
+    public boolean isShown(int note) {
+        return ends[note] > starts[note];
+    }
+
+    /**
+     * @return the first note shown at or after an offset, getNoteCount() if there is none
+     */
+    public int getNoteAt(int offset) {
+        // First note ending after the offset: ends never decrease
+        int low = 0, high = ends.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (ends[middle] > offset)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        while (low < ends.length && !isShown(low))
+            low++;
+        return low;
+    }
+
+    /**
+     * Builds the text note by note, recording offsets on the way.
+     */
+    static class Builder {
+        private final List<MusicNote> notes;
+        private final StringBuilder buffer = new StringBuilder();
+        private final int[] starts;
+        private final int[] ends;
+        private int count = 0;
+
+        Builder(List<MusicNote> notes) {
+            this.notes = notes;
+            this.starts = new int[notes.size()];
+            this.ends = new int[notes.size()];
+        }
+
+        /**
+         * @return false once all notes are added
+         */
+        boolean hasNext() {
+            return count < notes.size();
+        }
+
+        void appendNext() {
+            final MusicNote note = notes.get(count);
+            starts[count] = buffer.length();
+            if (!note.isRest()) {
+                buffer.append(note.toTab());
+                ends[count] = buffer.length();
+
+                // Добавляем пробелы в зависимости от длительности ноты
+                final float lengthMs = note.getLengthInMS(1.0f);
+                if (lengthMs >= 800) {
+                    buffer.append("  ");
+                } else if (lengthMs >= 400) {
+                    buffer.append(" ");
+                }
+            } else {
+                ends[count] = starts[count];
+            }
+            count++;
+        }
+
+        void appendLineBreak() {
+            buffer.append('\n');
+        }
+
+        /**
+         * @return the tabs, notes not added being placed at the end of the text
+         */
+        TabText build() {
+            Arrays.fill(starts, count, starts.length, buffer.length());
+            Arrays.fill(ends, count, ends.length, buffer.length());
+            return new TabText(buffer.toString(), starts, ends);
+        }
+    }
+
+    /**
+     * @return the tabs of notes on a single line
+     */
+    public static TabText of(List<MusicNote> notes) {
+        final Builder builder = new Builder(notes);
+        while (builder.hasNext())
+            builder.appendNext();
+        return builder.build();
+    }
+
+    /**
+     * @return the tabs of notes, one line of text per music line of the ABC
+     */
+    public static TabText of(List<MusicNote> notes, ABCStructure structure) {
+        final Builder builder = new Builder(notes);
+        for (int line = 0; line < structure.getLineCount(); ++line) {
+            while (builder.count < structure.getLineEnd(line) && builder.hasNext())
+                builder.appendNext();
+            builder.appendLineBreak();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,121 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Start of every note of a tune, in samples at a given tempo, so that seeking and following the
+ * playback do not walk the notes: note to time is a lookup, time to note a binary search.
+ * "Played notes" are the notes that are not rests, i.e. the characters of the tabs.
+ */
+public class TimingIndex {
+    private final int sampleRate;
+    private final int[] starts; // per note, plus the end of the tune
+    private final int[] played; // note index of each played note
+    private final int[] playedBefore; // per note, number of played notes before it
+
+    public TimingIndex(List<MusicNote> notes, float tempoModifier, int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.starts = new int[notes.size() + 1];
+        this.playedBefore = new int[notes.size() + 1];
+        final int[] played = new int[notes.size()];
+
+        // Starts are rounded from the exact time since the start, so that rounding does not add up
+        final double samplesPerMs = sampleRate / (1000.0 * tempoModifier);
+        double time = 0; // ms
+        int count = 0;
+        for (int i = 0; i < notes.size(); ++i) {
+            final MusicNote note = notes.get(i);
+            time += note.getDurationMs();
+            starts[i + 1] = (int) Math.round(time * samplesPerMs);
+            playedBefore[i] = count;
+            if (!note.isRest())
+                played[count++] = i;
+        }
+        playedBefore[notes.size()] = count;
+        this.played = Arrays.copyOf(played, count);
+    }
+
+    public int getNoteCount() {
+        return starts.length - 1;
+    }
+
+    public int getPlayedNoteCount() {
+        return played.length;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getTotalSamples() {
+        return starts[starts.length - 1];
+    }
+
+    /**
+     * @return the first sample of a note, or the end of the tune for getNoteCount()
+     */
+    public int getStart(int note) {
+        return starts[note];
+    }
+
+    public int getLength(int note) {
+        return starts[note + 1] - starts[note];
+    }
+
+    /**
+     * @return the note playing at a sample, getNoteCount() past the end of the tune
+     */
+    public int getNoteAt(long sample) {
+        if (sample < 0)
+            return 0;
+        if (sample >= getTotalSamples())
+            return getNoteCount();
+        // Last note starting at or before the sample (notes of length 0 are skipped)
+        int low = 0, high = starts.length - 2;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= sample)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+
+    /**
+     * @return the note index of a played note
+     */
+    public int getPlayedNote(int playedIndex) {
+        return played[playedIndex];
+    }
+
+    /**
+     * @return the number of played notes before a note, i.e. the played index of the next one
+     */
+    public int getPlayedBefore(int note) {
+        return playedBefore[note];
+    }
+
+    /**
+     * Where playback starts to play a given played note: right after the previous played note, so
+     * that the rests before it are kept.
+     * @return the note index, 0 for the first played note or when out of range
+     */
+    public int getPlayedNoteEntry(int playedIndex) {
+        if (playedIndex <= 0 || playedIndex > played.length)
+            return 0;
+        return played[playedIndex - 1] + 1;
+    }
+
+    /**
+     * @return the time at which playback starts to play a given played note, in s
+     */
+    public float getPlayedNoteTime(int playedIndex) {
+        return toSeconds(starts[getPlayedNoteEntry(playedIndex)]);
+    }
+
+    public float toSeconds(long samples) {
+        return (float) samples / sampleRate;
+    }
+}
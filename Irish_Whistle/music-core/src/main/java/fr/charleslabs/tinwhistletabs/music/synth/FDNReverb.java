@@ -0,0 +1,106 @@
+package fr.charleslabs.tinwhistletabs.music.synth;
+
+import java.util.Arrays;
+
+/**
+ * Reverb of the synth: a feedback delay network of four lines, read and written once per sample.
+ * The lines output the first echoes of the tune ({@link TinWhistleSynth#REVERB_DELAYS} and
+ * {@link TinWhistleSynth#REVERB_GAINS}), and are fed back through a Hadamard matrix so that the
+ * echoes blend into a tail decaying in {@link TinWhistleSynth#REVERB_DECAY}.
+ * The state is the four lines alone, so a tune can be processed in blocks of any size with the
+ * same result as a full-buffer pass.
+ */
+public class FDNReverb {
+    private final float[] line0, line1, line2, line3;
+    private final float feedback0, feedback1, feedback2, feedback3; // per line decay, halved for the matrix
+    private final float gain0 = TinWhistleSynth.REVERB_GAINS[0], gain1 = TinWhistleSynth.REVERB_GAINS[1],
+            gain2 = TinWhistleSynth.REVERB_GAINS[2], gain3 = TinWhistleSynth.REVERB_GAINS[3];
+    private int pos0, pos1, pos2, pos3;
+
+    public FDNReverb(int sampleRate) {
+        final int[] delays = delays(sampleRate);
+        line0 = new float[delays[0]];
+        line1 = new float[delays[1]];
+        line2 = new float[delays[2]];
+        line3 = new float[delays[3]];
+        feedback0 = feedback(delays[0], sampleRate);
+        feedback1 = feedback(delays[1], sampleRate);
+        feedback2 = feedback(delays[2], sampleRate);
+        feedback3 = feedback(delays[3], sampleRate);
+    }
+
+    /**
+     * @return the line lengths in samples, made coprime so that their echoes do not pile up
+     */
+    static int[] delays(int sampleRate) {
+        final int[] delays = new int[TinWhistleSynth.REVERB_DELAYS.length];
+        for (int i = 0; i < delays.length; ++i) {
+            int delay = Math.max(1, (int)(sampleRate*TinWhistleSynth.REVERB_DELAYS[i]));
+            for (int j = 0; j < i; ++j) {
+                if (gcd(delay, delays[j]) != 1) {
+                    delay++;
+                    j = -1;
+                }
+            }
+            delays[i] = delay;
+        }
+        return delays;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            final int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * @return the gain for a line to decay by 60 dB in REVERB_DECAY, halved to normalise the matrix
+     */
+    private static float feedback(int delay, int sampleRate) {
+        return 0.5f * (float) Math.pow(10, -3.0 * delay / (sampleRate * TinWhistleSynth.REVERB_DECAY));
+    }
+
+    /**
+     * Process the first length samples of block in place.
+     */
+    public void process(float[] block, int length) {
+        final float[] line0 = this.line0, line1 = this.line1, line2 = this.line2, line3 = this.line3;
+        int pos0 = this.pos0, pos1 = this.pos1, pos2 = this.pos2, pos3 = this.pos3;
+        for (int i = 0; i < length; ++i) {
+            final float in = block[i];
+            final float out0 = line0[pos0], out1 = line1[pos1], out2 = line2[pos2], out3 = line3[pos3];
+            block[i] = in + gain0*out0 + gain1*out1 + gain2*out2 + gain3*out3;
+
+            // Hadamard matrix, its 1/2 normalisation in the feedback gains
+            final float sum01 = out0 + out1, diff01 = out0 - out1;
+            final float sum23 = out2 + out3, diff23 = out2 - out3;
+            line0[pos0] = in + feedback0*(sum01 + sum23);
+            line1[pos1] = in + feedback1*(diff01 + diff23);
+            line2[pos2] = in + feedback2*(sum01 - sum23);
+            line3[pos3] = in + feedback3*(diff01 - diff23);
+
+            if (++pos0 == line0.length) pos0 = 0;
+            if (++pos1 == line1.length) pos1 = 0;
+            if (++pos2 == line2.length) pos2 = 0;
+            if (++pos3 == line3.length) pos3 = 0;
+        }
+        this.pos0 = pos0;
+        this.pos1 = pos1;
+        this.pos2 = pos2;
+        this.pos3 = pos3;
+    }
+
+    /**
+     * Forget the reverb tail (e.g. after a seek).
+     */
+    public void reset() {
+        Arrays.fill(line0, 0);
+        Arrays.fill(line1, 0);
+        Arrays.fill(line2, 0);
+        Arrays.fill(line3, 0);
+        pos0 = pos1 = pos2 = pos3 = 0;
+    }
+}
@@ -0,0 +1,110 @@
+package fr.charleslabs.tinwhistletabs.music.synth;
+
+public class TinWhistleSynth {
+    private final static float OSCI_AMP = 0.3f;
+    private final static float ENV_ATTACK = 0.05f, ENV_DECAY = 0.2f, ENV_RELEASE = 0.2f, ENV_LEVEL_SUSTAIN =0.4f;
+    private final static float VIBRATO_FREQ = 4f, VIBRATO_AMP=0.18f;
+    private final static float NOISE_AMP = 0.015f;
+    // Reverb first echoes (delay in s, gain), and time for the tail to decay by 60 dB (s)
+    final static float[] REVERB_DELAYS = {0.1f, 0.2f, 0.3f, 0.4f};
+    final static float[] REVERB_GAINS = {0.2f, 0.1f, 0.05f, 0.05f};
+    final static float REVERB_DECAY = 0.6f;
+
+    // Wavetable: one period of the whistle waveform (fundamental + 3 harmonics), plus a guard point
+    private final static int TABLE_BITS = 12, TABLE_SIZE = 1 << TABLE_BITS;
+    private final static int FRAC_BITS = 32 - TABLE_BITS;
+    private final static float FRAC_SCALE = 1f / (1 << FRAC_BITS);
+    private final static float[] WAVETABLE = new float[TABLE_SIZE + 1];
+    static {
+        for (int i = 0; i <= TABLE_SIZE; ++i) {
+            final double phase = 2 * Math.PI * i / TABLE_SIZE;
+            WAVETABLE[i] = (float)(Math.sin(phase) + 0.30 * Math.sin(2 * phase) +
+                    0.20 * Math.sin(3 * phase) + 0.10 * Math.sin(4 * phase));
+        }
+    }
+
+    public static void genNote(float frequency, int numSamples, float[] music, int offset, int sampleRate) {
+        oscillator(frequency, numSamples, music, offset, sampleRate, OSCI_AMP);
+        whiteNoise(numSamples, music, offset, NOISE_AMP, Float.floatToIntBits(frequency) ^ numSamples);
+        envelope(numSamples,music,offset,(int)(ENV_ATTACK*numSamples),(int)(ENV_DECAY*numSamples),
+                (int)(ENV_RELEASE*numSamples),ENV_LEVEL_SUSTAIN);
+        vibrato(numSamples,music,offset,sampleRate,VIBRATO_AMP,VIBRATO_FREQ);
+    }
+
+    /**
+     * Main oscillator: wavetable lookup driven by a 32 bit phase accumulator
+     * (the phase wraps around naturally on overflow).
+     */
+    private static void oscillator(float frequency, int numSamples, float[] music, int offset, int sampleRate, float amp) {
+        final int phaseInc = (int)(long)((double)frequency / sampleRate * 4294967296d);
+        final int end = Math.min(numSamples, music.length - offset);
+        int phase = 0;
+        for (int i = 0; i < end; ++i) {
+            final int index = phase >>> FRAC_BITS;
+            final float frac = (phase & ((1 << FRAC_BITS) - 1)) * FRAC_SCALE;
+            final float a = WAVETABLE[index];
+            music[i+offset] = amp*(a + frac*(WAVETABLE[index+1] - a));
+            phase += phaseInc;
+        }
+    }
+
+    /**
+     * Uniform noise in [0, amp), from a xorshift generator.
+     */
+    private static void whiteNoise(int numSamples, float[] music, int offset, float amp, int seed) {
+        final float scale = amp / (1 << 24);
+        final int end = Math.min(numSamples, music.length - offset);
+        int x = seed != 0 ? seed : 0x9E3779B9;
+        for (int i = 0; i < end; ++i) {
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            music[i+offset] += scale * (x >>> 8);
+        }
+    }
+
+    /**
+     * Envelope generator (attack, decay, sustain and release).
+     */
+    private static void envelope(int numSamples, float[] music, int offset,
+                                 int attack, int decay, int release, float sustain_level) {
+        int sustain = numSamples - attack - decay - release;
+
+        final float attackStep = attack > 0 ? 1f/attack : 0;
+        for (int i = 0; i < attack; ++i)
+            music[i+offset] *= i*attackStep;
+        final float decayStep = decay > 0 ? (sustain_level - 1f)/decay : 0;
+        for (int i = 0; i < decay; ++i)
+            music[i+offset+attack] *= 1f + i*decayStep;
+        for (int i = 0; i < sustain; ++i)
+            music[i+offset+attack+decay] *= sustain_level;
+        final float releaseStep = release > 0 ? sustain_level/release : 0;
+        for (int i = 0; i < release; ++i)
+            music[i+offset+numSamples-release] *= sustain_level - i*releaseStep;
+    }
+
+    /**
+     * Vibrato generator. The cosine LFO is computed with the second order recurrence
+     * cos((n+1)w) = 2cos(w)cos(nw) - cos((n-1)w), two multiplications per sample.
+     */
+    private static void vibrato(int numSamples, float[] music, int offset, int sampleRate,
+                                float vibrato_amp, float vibrato_freq) {
+        final double omega = 2 * Math.PI * vibrato_freq / sampleRate;
+        final double k = 2 * Math.cos(omega);
+        double current = 1, previous = Math.cos(omega); // cos(0), cos(-w)
+        for (int i = 0; i < numSamples; ++i) {
+            music[i+offset] *= (1-vibrato_amp) + vibrato_amp*(float)current;
+            final double next = k*current - previous;
+            previous = current;
+            current = next;
+        }
+    }
+
+    /**
+     * Apply the reverb to a fully rendered tune, in a single pass.
+     */
+    public static void reverb(float[] music, int sampleRate) {
+        new FDNReverb(sampleRate).process(music, music.length);
+    }
+
+}
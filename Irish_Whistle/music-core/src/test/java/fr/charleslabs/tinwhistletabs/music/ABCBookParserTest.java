@@ -0,0 +1,72 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ABCBookParserTest {
+    private static final String BOOK = "%abc-2.1\nL:1/8\n\n"
+            + "X: 1\nT: First\nR: reel\nC: Trad.\nK: D\ndefg abag|\n\n"
+            + "X: 2\nT: Broken\nL: 1/x\nK: D\ndefg|\n\n"
+            + "X:3\nT: Third\nR: jig\nK: G\nGAB c2A|";
+
+    @Test
+    public void split() {
+        final List<ABCBookParser.Tune> tunes = ABCBookParser.split(BOOK);
+        assertEquals(3, tunes.size());
+
+        assertEquals(1, tunes.get(0).number);
+        assertEquals(4, tunes.get(0).line);
+        assertEquals("reel", tunes.get(0).rhythm);
+        assertEquals("Trad.", tunes.get(0).composer);
+        assertTrue(tunes.get(0).abc.startsWith("X: 1\nL:1/8\nT: First\n"));
+        assertTrue(tunes.get(2).abc.startsWith("X:3\nL:1/8\nT: Third\n"));
+
+        assertEquals(3, tunes.get(2).number);
+        assertEquals("jig", tunes.get(2).rhythm);
+        assertNull(tunes.get(2).composer);
+    }
+
+    @Test
+    public void singleTune() {
+        final List<ABCBookParser.Tune> tunes = ABCBookParser.split("T: No number\nR: polka\nK: D\ndefg|");
+        assertEquals(1, tunes.size());
+        assertEquals(-1, tunes.get(0).number);
+        assertEquals("polka", tunes.get(0).rhythm);
+        assertTrue(ABCBookParser.split(" \n").isEmpty());
+    }
+
+    @Test
+    public void errorsAreReportedPerTune() {
+        final List<ABCBookParser.Tune> tunes = ABCBookParser.parse(BOOK, 2);
+        assertEquals("First", tunes.get(0).getName());
+        assertEquals(8, tunes.get(0).result.notes.size());
+        assertNull(tunes.get(1).result);
+        assertNotNull(tunes.get(1).error);
+        assertEquals("X:2 (line 11)", tunes.get(1).getName());
+        assertEquals("Third", tunes.get(2).getName());
+    }
+
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        final StringBuilder book = new StringBuilder();
+        for (int i = 1; i <= 500; ++i)
+            book.append("X:").append(i).append("\nT:Tune ").append(i).append("\nK:")
+                    .append("DGACF".charAt(i % 5)).append("\n").append(i % 2 == 0 ? "defg abag|" : "GAB c2A d2B|")
+                    .append(i % 7 == 0 ? "^c'/2" : "").append("\n\n");
+
+        final List<ABCBookParser.Tune> tunes = ABCBookParser.parse(book.toString(), 4);
+        assertEquals(500, tunes.size());
+        for (ABCBookParser.Tune tune : tunes) {
+            assertNull(tune.error);
+            final List<MusicNote> expected = ABCParser.parse(tune.abc).notes;
+            assertEquals(expected.size(), tune.result.notes.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.get(i).getPitch(), tune.result.notes.get(i).getPitch());
+                assertEquals(expected.get(i).getLengthInMS(1f), tune.result.notes.get(i).getLengthInMS(1f), 0);
+            }
+        }
+    }
+}
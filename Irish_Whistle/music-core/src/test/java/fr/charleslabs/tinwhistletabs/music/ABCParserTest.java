@@ -0,0 +1,100 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ABCParserTest {
+    private static int[] pitches(List<MusicNote> notes) {
+        final int[] pitches = new int[notes.size()];
+        for (int i = 0; i < pitches.length; ++i)
+            pitches[i] = notes.get(i).getPitch();
+        return pitches;
+    }
+
+    @Test
+    public void headers() throws Exception {
+        final ABCParser.ABCParseResult result = ABCParser.parse(
+                "X: 1\nT: The Butterfly\nR: slip jig\nM: 9/8\nL: 1/8\nQ: 3/8=100\nK: Emin\nB2E G2E F3|");
+        assertEquals("The Butterfly", result.title);
+        assertEquals("9/8", result.meter);
+        assertEquals("Emin", result.key);
+        assertEquals(100, result.tempo);
+        assertEquals(5, result.notes.size());
+    }
+
+    @Test
+    public void keySignatureAndAccidentals() throws Exception {
+        // D major scale, already in whistle range so not transposed
+        final int[] scale = {54, 56, 58, 59, 61, 63, 65, 66};
+        assertArrayEquals(scale, pitches(ABCParser.parse("K:D\nd e f g a b c' d'").notes));
+        assertArrayEquals(scale, pitches(ABCParser.parse("K:F\nd e ^f g a =b ^c' d'").notes));
+    }
+
+    @Test
+    public void octavesAreTransposedToWhistleRange() throws Exception {
+        // One octave too low
+        final List<MusicNote> notes = ABCParser.parse("K:C\nD, E, F, G, A, B, C D").notes;
+        assertArrayEquals(new int[]{54, 56, 57, 59, 61, 63, 64, 66}, pitches(notes));
+    }
+
+    @Test
+    public void lengthsAndRests() throws Exception {
+        // L:1/8 at Q:1/4=120: an eighth note lasts 250 ms
+        final List<MusicNote> notes = ABCParser.parse("L:1/8\nQ:1/4=120\nK:D\nd2 d z d3").notes;
+        final int[] lengths = new int[notes.size()];
+        for (int i = 0; i < lengths.length; ++i)
+            lengths[i] = (int) notes.get(i).getLengthInMS(1f);
+        assertArrayEquals(new int[]{500, 250, 250, 750}, lengths);
+        assertTrue(notes.get(2).isRest());
+    }
+
+    @Test
+    public void fractionalLengthsAndTuplets() throws Exception {
+        // L:1/8, an eighth is 240 ticks
+        final List<MusicNote> notes = ABCParser.parse("L:1/8\nQ:1/4=100\nK:D\nd/4 d3/2 d// d/ (3ddd (3:2:2dd d").notes;
+        final int[] ticks = new int[notes.size()];
+        for (int i = 0; i < ticks.length; ++i)
+            ticks[i] = notes.get(i).getTicks();
+        assertArrayEquals(new int[]{60, 360, 60, 120, 160, 160, 160, 160, 160, 240}, ticks);
+
+        // A triplet eighth at 100 BPM lasts 200 ms, not a rounded 199 or 200 ms each
+        assertEquals(600.0, notes.get(4).getDurationMs() * 3, 1e-9);
+    }
+
+    @Test
+    public void noLengthHeader() throws Exception {
+        // Without L:, notes are eighths
+        assertEquals(MusicNote.TICKS_PER_WHOLE / 8, ABCParser.parse("K:D\nd").notes.get(0).getTicks());
+    }
+
+    @Test
+    public void structure() throws Exception {
+        // Notes: d e f g | a b | a g f e | d
+        final ABCStructure structure = ABCParser.parse(
+                "X:1\nK:D\n|:de fg|[1ab:|\n% comment\n[2 a g|| f e |\nM:3/4\nd|]").structure;
+        assertEquals(3, structure.getLineCount());
+        assertArrayEquals(new int[]{0, 6, 10, 11}, new int[]{structure.getLineStart(0),
+                structure.getLineEnd(0), structure.getLineEnd(1), structure.getLineEnd(2)});
+
+        // The second ending opens on the repeat bar line ending the previous line
+        assertEquals(6, structure.getBarCount());
+        final int[][] bars = new int[structure.getBarCount()][];
+        for (int bar = 0; bar < bars.length; ++bar)
+            bars[bar] = new int[]{structure.getBarNote(bar), structure.getBarFlags(bar), structure.getEnding(bar)};
+        assertArrayEquals(new int[][]{
+                {0, ABCStructure.REPEAT_START, 0},
+                {4, 0, 1},
+                {6, ABCStructure.REPEAT_END, 2},
+                {8, ABCStructure.DOUBLE, 0},
+                {10, 0, 0},
+                {11, ABCStructure.DOUBLE, 0}}, bars);
+    }
+
+    @Test(expected = Exception.class)
+    public void noNotes() throws Exception {
+        ABCParser.parse("X:1\nT:Empty\nK:D\n");
+    }
+}
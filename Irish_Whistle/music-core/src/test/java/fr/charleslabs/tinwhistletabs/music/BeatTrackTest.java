@@ -0,0 +1,73 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BeatTrackTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    @Test
+    public void gridFromHeader() {
+        // Jig: two dotted quarter beats per bar, Q: in dotted quarters
+        final BeatGrid jig = BeatGrid.of("X:1\nT:Jig\nM:6/8\nQ:3/8=120\nK:D\ndef|\nM:2/4\n");
+        assertEquals(2, jig.getBeatsPerBar());
+        assertEquals(500f, jig.getBeatMs(), 0.01f);
+
+        // Reel without Q: the parser's default of 120 quarters per minute
+        final BeatGrid reel = BeatGrid.of("X:1\nM:C|\nL:1/8\nK:D\nabc|");
+        assertEquals(2, reel.getBeatsPerBar());
+        assertEquals(1000f, reel.getBeatMs(), 0.01f);
+
+        assertEquals(3, BeatGrid.of("M:3/4\nQ:1/4=100\nK:G").getBeatsPerBar());
+        assertEquals(0, BeatGrid.of("M:none\nK:G").getBeatsPerBar());
+        assertSame(BeatGrid.DEFAULT, BeatGrid.of(null));
+    }
+
+    @Test
+    public void clicksAtBeats() throws Exception {
+        // 3/4 at 120 quarters per minute, a quarter of pickup then two and a half bars
+        final String abc = "X:1\nM:3/4\nL:1/4\nQ:1/4=120\nK:D\nd|def|def|d2|";
+        final ABCParser.ABCParseResult tune = ABCParser.parse(abc);
+        final BeatGrid grid = BeatGrid.of(abc, tune.structure);
+        assertEquals(1, grid.getPickupNotes());
+        final TimingIndex timing = new TimingIndex(tune.notes, 1f, SAMPLE_RATE);
+        final BeatTrack beats = new BeatTrack(grid, 1f, timing);
+
+        // Mix in odd sized blocks, as the player does
+        final short[] pcm = new short[timing.getTotalSamples()];
+        final short[] block = new short[777];
+        for (int start = 0; start < pcm.length; start += block.length) {
+            final int count = Math.min(block.length, pcm.length - start);
+            Arrays.fill(block, (short) 0);
+            beats.mix(block, start, count);
+            System.arraycopy(block, 0, pcm, start, count);
+        }
+
+        // Beats of exactly 500 ms, the pickup one unaccented, bars accented from the first bar line
+        assertEquals(-1, beats.getFirstBeat());
+        assertEquals(0, beats.getBeatStart(-1));
+        for (long k = -1; k < 8; ++k) {
+            final int beat = (int) beats.getBeatStart(k);
+            assertEquals(SAMPLE_RATE / 2 * (k + 1), beat);
+            assertEquals(0, pcm[beat]);
+            assertNotEquals(0, pcm[beat + 1]);
+            assertEquals(0, pcm[beat - 1 < 0 ? 0 : beat - 1]);
+            assertEquals(k % 3 == 0, beats.isAccented(k));
+        }
+        // The grid ends with the tune, at the tempo of Q:
+        assertEquals(timing.getTotalSamples(), beats.getBeatStart(8));
+    }
+
+    @Test
+    public void saturates() {
+        final BeatTrack beats = new BeatTrack(new BeatGrid(4, 500f), 1f, SAMPLE_RATE);
+        final short[] pcm = new short[200];
+        Arrays.fill(pcm, Short.MAX_VALUE);
+        beats.mix(pcm, 0, pcm.length);
+        for (short value : pcm)
+            assertTrue(value > 0);
+    }
+}
@@ -0,0 +1,112 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IncrementalABCParserTest {
+    private static final String TUNE = "X: 1\nT: The Butterfly\nR: slip jig\nM: 9/8\nL: 1/8\nQ: 3/8=100\nK: Emin\n"
+            + "|:B2E G2E F3|B2E G2E FED|B2E G2E F3|B2d d2B AFD:|\n"
+            + "|:B2d e2f g3|B2d g2e dBA|B2d e2f g2a|b2a g2e dBA:|\n"
+            + "|:B3 B2A G2A|B3 BAB dBA|B3 B2A G2A|B2d g2e dBA:|";
+
+    private static void assertSameNotes(List<MusicNote> expected, List<MusicNote> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getPitch(), actual.get(i).getPitch());
+            assertEquals(expected.get(i).getLengthInMS(1f), actual.get(i).getLengthInMS(1f), 0);
+        }
+    }
+
+    /**
+     * Apply an edit to both the text and the parser, like a TextWatcher would.
+     */
+    private static String edit(IncrementalABCParser parser, String text, int start, int before, String inserted) {
+        final String result = text.substring(0, start) + inserted + text.substring(start + before);
+        parser.edit(result, start, before, inserted.length());
+        return result;
+    }
+
+    @Test
+    public void typingMatchesFullParse() throws Exception {
+        final IncrementalABCParser parser = new IncrementalABCParser();
+        String text = "";
+        for (int i = 0; i < TUNE.length(); ++i)
+            text = edit(parser, text, i, 0, TUNE.substring(i, i + 1));
+
+        final ABCParser.ABCParseResult expected = ABCParser.parse(TUNE);
+        final ABCParser.ABCParseResult actual = parser.getResult();
+        assertSameNotes(expected.notes, actual.notes);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.key, actual.key);
+        assertEquals(expected.tempo, actual.tempo);
+        assertEquals(expected.notes.size(), parser.getNoteCount());
+        assertEquals(3, actual.structure.getLineCount());
+        assertEquals(expected.structure.getLineEnd(1), actual.structure.getLineEnd(1));
+        assertEquals(expected.structure.getBarCount(), actual.structure.getBarCount());
+        for (int bar = 0; bar < expected.structure.getBarCount(); ++bar) {
+            assertEquals(expected.structure.getBarNote(bar), actual.structure.getBarNote(bar));
+            assertEquals(expected.structure.getBarFlags(bar), actual.structure.getBarFlags(bar));
+        }
+        assertEquals("The Butterfly", parser.getHeader('T'));
+        assertEquals("slip jig", parser.getHeader('R'));
+    }
+
+    @Test
+    public void randomEditsMatchFullParse() throws Exception {
+        final Random random = new Random(42);
+        final String alphabet = "ABCDEFGabcdefgz^_=',/23|: \nK:DK:GL:1/4";
+        final IncrementalABCParser parser = new IncrementalABCParser();
+        parser.setText(TUNE);
+        String text = TUNE;
+        for (int i = 0; i < 500; ++i) {
+            final int start = random.nextInt(text.length() + 1);
+            final int before = random.nextInt(Math.min(5, text.length() - start) + 1);
+            final int at = random.nextInt(alphabet.length() - 3);
+            text = edit(parser, text, start, before, alphabet.substring(at, at + random.nextInt(4)));
+
+            List<MusicNote> expected;
+            try {
+                expected = ABCParser.parse(text).notes;
+            } catch (Exception e) {
+                expected = null;
+            }
+            List<MusicNote> actual;
+            try {
+                actual = parser.getResult().notes;
+            } catch (Exception e) {
+                actual = null;
+            }
+            assertEquals(expected == null, actual == null);
+            if (expected != null)
+                assertSameNotes(expected, actual);
+        }
+    }
+
+    @Test
+    public void keyChangeReparsesFollowingLines() throws Exception {
+        final IncrementalABCParser parser = new IncrementalABCParser();
+        String text = "K:C\nd e f g a b c' d'";
+        parser.setText(text);
+        final String natural = parser.getTabs(1);
+        // F becomes sharp
+        text = edit(parser, text, 2, 1, "D");
+        assertSameNotes(ABCParser.parse(text).notes, parser.getResult().notes);
+        assertEquals("defgabcD", parser.getTabs(1).replace(" ", ""));
+        assertNotEquals(natural, parser.getTabs(1));
+    }
+
+    @Test
+    public void errors() throws Exception {
+        final IncrementalABCParser parser = new IncrementalABCParser();
+        parser.setText("L:1/x\nK:D\ndef");
+        assertEquals(3, parser.getNoteCount());
+        assertNotNull(parser.getError());
+        assertTrue(parser.getError().startsWith("Line 1"));
+        parser.setText("L:1/8\nK:D\ndef");
+        assertNull(parser.getError());
+    }
+}
@@ -0,0 +1,50 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MusicLogTest {
+    @After
+    public void tearDown() {
+        MusicLog.setTracing(false);
+        MusicLog.setLogger(null);
+        MusicLog.resetMetrics();
+    }
+
+    @Test
+    public void nothingBuiltWhenNotTracing() throws Exception {
+        final List<String> messages = new ArrayList<>();
+        MusicLog.setLogger((priority, tag, message, throwable) -> messages.add(message));
+
+        MusicLog.d("Test", () -> {
+            throw new AssertionError("Message built while not tracing");
+        });
+        assertEquals(0, MusicLog.startTimer());
+        ABCParser.parse("X:1\nQ:1/4=100\nK:D\ndefg|");
+        assertTrue(messages.isEmpty());
+        assertEquals("", MusicLog.dumpMetrics());
+
+        MusicLog.setTracing(true);
+        MusicLog.d("Test", () -> "traced");
+        assertEquals("traced", messages.get(0));
+    }
+
+    @Test
+    public void countersAndTimers() throws Exception {
+        MusicLog.setTracing(true);
+        MusicLog.count("test.count", 2);
+        MusicLog.count("test.count", 3);
+        ABCParser.parse("X:1\nK:D\ndefg|");
+        ABCParser.parse("X:1\nK:D\nabc|");
+
+        final String dump = MusicLog.dumpMetrics();
+        assertTrue(dump, dump.contains("abc.parse: 2 calls"));
+        assertTrue(dump, dump.contains("7 items"));
+        assertTrue(dump, dump.contains("test.count: 2 calls, total 5"));
+    }
+}
@@ -0,0 +1,118 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.charleslabs.tinwhistletabs.music.synth.TinWhistleSynth;
+
+import static org.junit.Assert.*;
+
+public class MusicRendererTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    /**
+     * About a minute of notes and rests: many synth tasks, more than one window.
+     */
+    private static List<MusicNote> longTune() throws Exception {
+        final List<MusicNote> tune = ABCParser.parse("X:1\nL:1/8\nQ:1/4=120\nK:D\n|:d2fd Adfd|(3efg fe d2 z2:|").notes;
+        final List<MusicNote> notes = new ArrayList<>();
+        for (int i = 0; i < 15; ++i)
+            notes.addAll(tune);
+        return notes;
+    }
+
+    @Test
+    public void parallelSynthesisMatchesSerial() throws Exception {
+        final List<MusicNote> notes = longTune();
+        final TimingIndex timing = new TimingIndex(notes, 0.9f, SAMPLE_RATE);
+
+        final float[] serial = new float[timing.getTotalSamples()];
+        for (int i = 0; i < notes.size(); ++i) {
+            if (!notes.get(i).isRest())
+                TinWhistleSynth.genNote(notes.get(i).getFrequency(), timing.getLength(i), serial, timing.getStart(i), SAMPLE_RATE);
+        }
+        assertArrayEquals(serial, MusicRenderer.synthesize(notes, timing, SAMPLE_RATE), 0f);
+    }
+
+    @Test
+    public void windowedRenderMatchesWholeTune() throws Exception {
+        final List<MusicNote> notes = longTune();
+        final float[] music = MusicRenderer.synthesize(notes, new TimingIndex(notes, 0.9f, SAMPLE_RATE), SAMPLE_RATE);
+        TinWhistleSynth.reverb(music, SAMPLE_RATE);
+        final short[] expected = new short[music.length];
+        MusicRenderer.toPCM16(music, expected, music.length);
+
+        assertArrayEquals(expected, MusicRenderer.genMusic(notes, 0.9f, SAMPLE_RATE, false));
+    }
+
+    @Test
+    public void pcmSaturates() {
+        final short[] pcm = new short[4];
+        MusicRenderer.toPCM16(new float[]{1.5f, -1.5f, 0.5f, -1f}, pcm, 4);
+        assertArrayEquals(new short[]{32767, -32768, 16384, -32767}, pcm);
+    }
+
+    @Test
+    public void ditherStaysWithinOneStep() {
+        final float[] samples = new float[10000];
+        for (int i = 0; i < samples.length; ++i)
+            samples[i] = 0.25f / 32767 * (i % 8);
+        final short[] pcm = new short[samples.length];
+        MusicRenderer.toPCM16(samples, pcm, 0, samples.length, 1);
+
+        // Within a step of the exact value, and right on average
+        double error = 0;
+        for (int i = 0; i < samples.length; ++i) {
+            final float exact = samples[i] * 32767;
+            assertTrue(pcm[i] + " for " + exact, Math.abs(pcm[i] - exact) <= 1.5f);
+            error += pcm[i] - exact;
+        }
+        assertEquals(0, error / samples.length, 0.05);
+    }
+
+    @Test
+    public void floatStreamMatchesPCM() throws Exception {
+        final List<MusicNote> notes = ABCParser.parse("X:1\nL:1/8\nQ:1/4=120\nK:D\nd2fd Adfd|").notes;
+        final MusicRenderer pcmRenderer = new MusicRenderer(notes, 1f, 48000);
+        pcmRenderer.setDither(false);
+        final MusicRenderer floatRenderer = new MusicRenderer(notes, 1f, 48000);
+
+        final short[] pcm = new short[1920];
+        final float[] out = new float[1920];
+        int count;
+        do {
+            count = pcmRenderer.renderPCM(pcm);
+            assertEquals(count, floatRenderer.renderPCM(out));
+            for (int i = 0; i < count; ++i)
+                assertEquals(pcm[i], out[i] * 32767, 0.5f);
+        } while (count == pcm.length);
+        assertEquals(48000 * 2, pcmRenderer.getPosition());
+    }
+
+    @Test
+    public void loop() throws Exception {
+        // Eighths of 250 ms: notes 1 and 2 (f d) loop over samples 11025 to 22050
+        final List<MusicNote> notes = ABCParser.parse("X:1\nL:1/8\nQ:1/4=120\nK:D\nd2fd Adfd|").notes;
+        final MusicRenderer renderer = new MusicRenderer(notes, 1f, SAMPLE_RATE);
+        renderer.setLoop(1, 3);
+        assertEquals(SAMPLE_RATE / 2, renderer.getLoopStart());
+        assertEquals(SAMPLE_RATE, renderer.getLoopEnd());
+
+        // Blocks stop at the loop end, the next one starts over
+        final short[] pcm = new short[4096];
+        int rendered = 0;
+        while (rendered < SAMPLE_RATE)
+            rendered += renderer.renderPCM(pcm);
+        assertEquals(SAMPLE_RATE, rendered);
+        assertEquals(SAMPLE_RATE, renderer.getPosition());
+        assertEquals(4096, renderer.renderPCM(pcm));
+        assertEquals(SAMPLE_RATE / 2 + 4096, renderer.getPosition());
+
+        // Unlooped, it carries on to the end of the tune
+        renderer.setLoop(-1, -1);
+        while (renderer.renderPCM(pcm) == pcm.length);
+        assertEquals(2 * SAMPLE_RATE, renderer.getPosition());
+    }
+}
@@ -0,0 +1,115 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PCMCacheTest {
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    @Test
+    public void diskTier() throws Exception {
+        final File dir = Files.createTempDirectory("pcm").toFile();
+        final short[] pcm = {1, -2, 3, Short.MAX_VALUE, Short.MIN_VALUE};
+        new PCMCache(dir, MAX_BYTES, MAX_BYTES).put("tune", pcm);
+
+        // Read back by a new cache, no temporary file left
+        final PCMCache cache = new PCMCache(dir, MAX_BYTES, MAX_BYTES);
+        assertArrayEquals(pcm, cache.get("tune"));
+        assertEquals(1, cache.getDiskHits());
+        assertArrayEquals(new String[]{"tune.pcm"}, dir.list());
+        cache.clear();
+        dir.delete();
+    }
+
+    @Test
+    public void truncatedFileIsDropped() throws Exception {
+        final File dir = Files.createTempDirectory("pcm").toFile();
+        final File file = new File(dir, "tune.pcm");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 0, 2});
+        }
+
+        final PCMCache cache = new PCMCache(dir, MAX_BYTES, MAX_BYTES);
+        assertNull(cache.get("tune"));
+        assertFalse(file.exists());
+        dir.delete();
+    }
+
+    @Test
+    public void keyIsVersioned() {
+        assertTrue(PCMCache.key("tune", 0, 1f, 22050, Collections.emptyList())
+                .startsWith("v" + PCMCache.FORMAT_VERSION + "_"));
+    }
+
+    @Test
+    public void memoryEvictsLeastRecentlyUsed() throws Exception {
+        final File dir = Files.createTempDirectory("pcm").toFile();
+        // Room for two tunes of 10 samples in memory
+        final PCMCache cache = new PCMCache(dir, 40, MAX_BYTES);
+        cache.put("a", new short[10]);
+        cache.put("b", new short[10]);
+        assertNotNull(cache.get("a"));
+        cache.put("c", new short[10]);
+        assertEquals(40, cache.getMemoryBytes());
+
+        // b, least recently used, went back to disk
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(3, cache.getMemoryHits());
+        assertNotNull(cache.get("b"));
+        assertEquals(1, cache.getDiskHits());
+        assertEquals(0, cache.getMisses());
+        cache.clear();
+        dir.delete();
+    }
+
+    @Test
+    public void largeTunesAreNotCached() throws Exception {
+        final File dir = Files.createTempDirectory("pcm").toFile();
+        // Tunes take at most half the memory tier
+        final PCMCache cache = new PCMCache(dir, 40, MAX_BYTES);
+        assertTrue(cache.accepts(10));
+        assertFalse(cache.accepts(11));
+
+        cache.put("large", new short[11]);
+        assertEquals(0, cache.getMemoryBytes());
+        assertNull(cache.get("large"));
+        assertEquals(1, cache.getMisses());
+        assertFalse(new File(dir, "large.pcm").exists());
+        dir.delete();
+    }
+
+    @Test
+    public void diskEvictsOldestFiles() throws Exception {
+        final File dir = Files.createTempDirectory("pcm").toFile();
+        // Room for two tunes of 10 samples on disk
+        final PCMCache cache = new PCMCache(dir, MAX_BYTES, 50);
+        cache.put("a", new short[10]);
+        cache.put("b", new short[10]);
+        new File(dir, "a.pcm").setLastModified(1000);
+        new File(dir, "b.pcm").setLastModified(2000);
+        cache.put("c", new short[10]);
+        assertArrayEquals(new String[]{"b.pcm", "c.pcm"}, sorted(dir.list()));
+
+        // Gone from disk, a is a miss once out of memory
+        final PCMCache restarted = new PCMCache(dir, MAX_BYTES, 50);
+        assertNull(restarted.get("a"));
+        assertNotNull(restarted.get("b"));
+        assertEquals(1, restarted.getMisses());
+        assertEquals(1, restarted.getDiskHits());
+        restarted.clear();
+        dir.delete();
+    }
+
+    private static String[] sorted(String[] names) {
+        Arrays.sort(names);
+        return names;
+    }
+}
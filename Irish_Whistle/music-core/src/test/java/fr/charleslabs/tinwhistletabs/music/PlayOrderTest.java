@@ -0,0 +1,56 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlayOrderTest {
+    /**
+     * @return the pitches of the tune in play order, as letters (notes in the whistle range)
+     */
+    private static String play(String abc) throws Exception {
+        final ABCParser.ABCParseResult result = ABCParser.parse("X:1\nL:1/8\nK:D\n" + abc);
+        final List<MusicNote> notes = PlayOrder.of(result.structure).apply(result.notes);
+        final StringBuilder played = new StringBuilder();
+        for (MusicNote note : notes)
+            played.append(note.isRest() ? 'z' : "d.e.fg.a.bc".charAt((note.getPitch() - 54) % 12));
+        return played.toString();
+    }
+
+    @Test
+    public void repeats() throws Exception {
+        assertEquals("defg", play("defg|"));
+        assertEquals("dedefgfg", play("|:de:|fg::|"));
+        // Without a start, from the last part end
+        assertEquals("dedefgfg", play("de:|fg:|"));
+        assertEquals("dedefgfg", play("de:|\nfg:|"));
+    }
+
+    @Test
+    public void endings() throws Exception {
+        assertEquals("deffdeggab", play("|:de|1f f:|2g g|]ab"));
+        // Second ending on the next line
+        assertEquals("defdegab", play("|:de|1f:|\n[2g|]ab"));
+        // A third ending is never played
+        assertEquals("dfdgab", play("|:d[1f:|[2g|[3e|]ab"));
+    }
+
+    @Test
+    public void positions() throws Exception {
+        final ABCStructure structure = ABCParser.parse("K:D\n|:de|1f:|2g|]").structure;
+        final PlayOrder order = PlayOrder.of(structure);
+        assertEquals(4, order.getNoteCount());
+        assertEquals(6, order.size());
+        assertArrayEquals(new int[]{0, 1, 2, 0, 1, 3}, new int[]{order.getNote(0), order.getNote(1),
+                order.getNote(2), order.getNote(3), order.getNote(4), order.getNote(5)});
+        assertEquals(2, order.getPosition(2));
+        assertEquals(5, order.getPosition(3));
+
+        final PlayOrder written = PlayOrder.of(4);
+        assertEquals(4, written.size());
+        assertEquals(3, written.getNote(3));
+        assertEquals(3, written.getPosition(3));
+    }
+}
@@ -0,0 +1,52 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TabTextTest {
+    @Test
+    public void offsets() {
+        final List<MusicNote> notes = new ArrayList<>();
+        notes.add(new MusicNote(54, 200)); // "d"
+        notes.add(new MusicNote(0, 200)); // rest
+        notes.add(new MusicNote(56, 500)); // "e "
+        notes.add(new MusicNote(58, 900)); // "f  "
+        notes.add(new MusicNote(59, 200)); // "g"
+        final TabText tabs = TabText.of(notes);
+
+        assertEquals("de f  g", tabs.getText());
+        assertArrayEquals(new int[]{0, 1, 1, 3, 6},
+                new int[]{tabs.getStart(0), tabs.getStart(1), tabs.getStart(2), tabs.getStart(3), tabs.getStart(4)});
+        assertFalse(tabs.isShown(1));
+
+        // Characters and spaces map to the note at or after them
+        assertArrayEquals(new int[]{0, 2, 3, 3, 4, 4, 4, 5},
+                new int[]{tabs.getNoteAt(0), tabs.getNoteAt(1), tabs.getNoteAt(2), tabs.getNoteAt(3),
+                        tabs.getNoteAt(4), tabs.getNoteAt(5), tabs.getNoteAt(6), tabs.getNoteAt(7)});
+    }
+
+    @Test
+    public void lineBreaks() throws Exception {
+        final String abc = "X:1\nT:Test\nL:1/8\nK:D\ndefg|\nabag|";
+        final JSONObject json = new JSONObject();
+        json.put("title", "Test");
+        json.put("file", "test");
+        json.put("type", "Reel");
+        json.put("abc", abc);
+        final MusicSheet sheet = new MusicSheet(json);
+        final List<MusicNote> notes = ABCParser.parse(abc).notes;
+
+        final TabText tabs = sheet.getTabs(notes);
+        assertEquals(sheet.notesToTabsWithLineBreaks(notes), tabs.getText());
+        assertEquals('\n', tabs.getText().charAt(tabs.getStart(4) - 1));
+        for (int i = 0; i < notes.size(); ++i) {
+            assertEquals(notes.get(i).toTab().charAt(0), tabs.getText().charAt(tabs.getStart(i)));
+            assertEquals(i, tabs.getNoteAt(tabs.getStart(i)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package fr.charleslabs.tinwhistletabs.music;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimingIndexTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    private static List<MusicNote> randomTune(long seed) {
+        final Random random = new Random(seed);
+        final List<MusicNote> notes = new ArrayList<>();
+        for (int i = 0; i < 300; ++i)
+            notes.add(new MusicNote(random.nextInt(4) == 0 ? 0 : 50 + random.nextInt(20), 50 + random.nextInt(600)));
+        return notes;
+    }
+
+    @Test
+    public void playedNoteTimeMatchesWalk() {
+        final List<MusicNote> notes = randomTune(1);
+        final TimingIndex timing = new TimingIndex(notes, 1.3f, SAMPLE_RATE);
+
+        // Reference: walk the notes until playedIndex played notes are behind
+        float time = 0, entry = 0;
+        int played = 0;
+        for (int i = 0; i < notes.size(); ++i) {
+            time += notes.get(i).getLengthInS(1.3f);
+            if (!notes.get(i).isRest()) {
+                // The index truncates each note to whole samples, as the renderer does
+                assertEquals(entry, timing.getPlayedNoteTime(played), (i + 1.0) / SAMPLE_RATE);
+                assertEquals(i, timing.getPlayedNote(played));
+                played++;
+                entry = time;
+            }
+        }
+        assertEquals(played, timing.getPlayedNoteCount());
+        assertEquals(0, timing.getPlayedNoteTime(played + 1), 0);
+    }
+
+    @Test
+    public void noteAtMatchesRenderer() {
+        final List<MusicNote> notes = randomTune(2);
+        final TimingIndex timing = new TimingIndex(notes, 0.8f, SAMPLE_RATE);
+
+        // Each start is rounded from the exact time, rounding does not add up
+        double time = 0;
+        int sample = 0;
+        for (int i = 0; i < notes.size(); ++i) {
+            assertEquals(sample, timing.getStart(i));
+            assertEquals(i, timing.getNoteAt(sample));
+            assertEquals(i, timing.getNoteAt(sample + timing.getLength(i) - 1));
+            time += notes.get(i).getDurationMs();
+            sample = (int) Math.round(time * SAMPLE_RATE / (1000.0 * 0.8f));
+        }
+        assertEquals(sample, timing.getTotalSamples());
+        assertEquals(notes.size(), timing.getNoteAt(sample));
+        assertEquals(0, timing.getNoteAt(-5));
+    }
+
+    @Test
+    public void noDrift() throws Exception {
+        // 3000 triplet eighths at 100 BPM (200 ms each, 4410 samples), each not a whole ms
+        final StringBuilder abc = new StringBuilder("X:1\nL:1/8\nQ:1/4=100\nK:D\n");
+        for (int i = 0; i < 1000; ++i)
+            abc.append("(3def ");
+        final List<MusicNote> notes = ABCParser.parse(abc.toString()).notes;
+        assertEquals(3000, notes.size());
+        assertEquals(200.0, notes.get(0).getDurationMs(), 1e-9);
+
+        final TimingIndex timing = new TimingIndex(notes, 1f, SAMPLE_RATE);
+        assertEquals(600 * SAMPLE_RATE, timing.getTotalSamples());
+        assertEquals(1500 * 4410, timing.getStart(1500));
+    }
+
+    @Test
+    public void playedBefore() {
+        final List<MusicNote> notes = new ArrayList<>();
+        notes.add(new MusicNote(0, 100));
+        notes.add(new MusicNote(60, 100));
+        notes.add(new MusicNote(0, 100));
+        notes.add(new MusicNote(62, 100));
+        final TimingIndex timing = new TimingIndex(notes, 1f, SAMPLE_RATE);
+
+        assertArrayEquals(new int[]{0, 0, 1, 1, 2}, new int[]{timing.getPlayedBefore(0), timing.getPlayedBefore(1),
+                timing.getPlayedBefore(2), timing.getPlayedBefore(3), timing.getPlayedBefore(4)});
+        // Playing the second played note starts with the rest before it
+        assertEquals(2, timing.getPlayedNoteEntry(1));
+        assertEquals(0, timing.getPlayedNoteEntry(0));
+    }
+}
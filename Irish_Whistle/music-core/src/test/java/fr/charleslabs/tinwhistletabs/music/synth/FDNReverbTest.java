@@ -0,0 +1,65 @@
+package fr.charleslabs.tinwhistletabs.music.synth;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class FDNReverbTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    private static float[] impulse(int length) {
+        final float[] music = new float[length];
+        music[0] = 1;
+        return music;
+    }
+
+    @Test
+    public void blocksMatchFullPass() {
+        final float[] full = new float[3 * SAMPLE_RATE];
+        for (int i = 0; i < SAMPLE_RATE; ++i)
+            full[i] = (float) Math.sin(i * 0.05);
+        final float[] blocks = full.clone();
+        TinWhistleSynth.reverb(full, SAMPLE_RATE);
+
+        final FDNReverb reverb = new FDNReverb(SAMPLE_RATE);
+        final float[] block = new float[1000];
+        for (int offset = 0; offset < blocks.length; offset += block.length) {
+            final int count = Math.min(block.length, blocks.length - offset);
+            System.arraycopy(blocks, offset, block, 0, count);
+            reverb.process(block, count);
+            System.arraycopy(block, 0, blocks, offset, count);
+        }
+        assertArrayEquals(full, blocks, 0f);
+    }
+
+    @Test
+    public void firstEcho() {
+        final float[] music = impulse(SAMPLE_RATE);
+        TinWhistleSynth.reverb(music, SAMPLE_RATE);
+
+        final int[] delays = FDNReverb.delays(SAMPLE_RATE);
+        assertEquals(1f, music[0], 0f);
+        for (int i = 1; i < delays[0]; ++i)
+            assertEquals(0f, music[i], 0f);
+        assertEquals(TinWhistleSynth.REVERB_GAINS[0], music[delays[0]], 1e-6f);
+
+        for (int i = 0; i < delays.length; ++i)
+            for (int j = 0; j < i; ++j)
+                assertEquals(1, BigInteger.valueOf(delays[i]).gcd(BigInteger.valueOf(delays[j])).intValue());
+    }
+
+    @Test
+    public void tailDecays() {
+        // From the last first echo, the tail is below -60 dB after the decay time
+        final int start = (int) ((TinWhistleSynth.REVERB_DELAYS[3] + TinWhistleSynth.REVERB_DECAY) * SAMPLE_RATE);
+        final float[] music = impulse(start + SAMPLE_RATE);
+        TinWhistleSynth.reverb(music, SAMPLE_RATE);
+
+        float peak = 0;
+        for (int i = start; i < music.length; ++i)
+            peak = Math.max(peak, Math.abs(music[i]));
+        assertTrue("Tail peak " + peak, peak < 1e-3f);
+    }
+}
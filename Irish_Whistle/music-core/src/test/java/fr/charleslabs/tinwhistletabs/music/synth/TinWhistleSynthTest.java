@@ -0,0 +1,68 @@
+package fr.charleslabs.tinwhistletabs.music.synth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The wavetable synth against the former Math.sin/Math.cos/Math.random implementation.
+ * Its speed is measured by SynthBenchmark, in the benchmark module.
+ */
+public class TinWhistleSynthTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    @Test
+    public void sameTimbreAsLegacy() {
+        // Notes of a D whistle, low D to high B, of a quarter to a second
+        final int[] pitches = {42, 49, 54, 58, 61, 66, 73};
+        final int[] lengths = {SAMPLE_RATE, SAMPLE_RATE / 4, SAMPLE_RATE / 2, 3 * SAMPLE_RATE / 8,
+                SAMPLE_RATE / 4, SAMPLE_RATE / 3, SAMPLE_RATE};
+        int totalSamples = 0;
+        for (int length : lengths)
+            totalSamples += length;
+
+        final float[] before = new float[totalSamples];
+        final float[] after = new float[totalSamples];
+        int offset = 0;
+        for (int i = 0; i < pitches.length; ++i) {
+            final float frequency = 440f * (float)Math.pow(2f, (float)(pitches[i] - 49)/12f);
+            Legacy.genNote(frequency, lengths[i], before, offset, SAMPLE_RATE);
+            TinWhistleSynth.genNote(frequency, lengths[i], after, offset, SAMPLE_RATE);
+            offset += lengths[i];
+        }
+
+        // Both only differ by their noise sources (amplitude 0.015)
+        for (int i = 0; i < totalSamples; ++i)
+            assertEquals("sample " + i, before[i], after[i], 0.02f);
+    }
+
+    /**
+     * Former implementation of the synth, kept as reference.
+     */
+    private static class Legacy {
+        static void genNote(float frequency, int numSamples, float[] music, int offset, int sampleRate) {
+            final float amp = 0.3f, attack = 0.05f, decay = 0.2f, release = 0.2f, sustainLevel = 0.4f;
+            for (int i = 0; i < numSamples && i+offset < music.length; ++i)
+                music[i+offset] = amp*((float)(Math.sin(2 * Math.PI * i / (sampleRate / frequency)) +
+                        0.30 * Math.sin(2 * Math.PI * i / (sampleRate / 2d / frequency)) +
+                        0.20 * Math.sin(2 * Math.PI * i / (sampleRate / 3d / frequency)) +
+                        0.10 * Math.sin(2 * Math.PI * i / (sampleRate / 4d / frequency))));
+            for (int i = 0; i < numSamples && i+offset < music.length; ++i)
+                music[i+offset] += 0.015f * Math.random();
+
+            final int a = (int)(attack*numSamples), d = (int)(decay*numSamples), r = (int)(release*numSamples);
+            final int s = numSamples - a - d - r;
+            for (int i = 0; i < a; ++i)
+                music[i+offset] *= (float)i/a;
+            for (int i = 0; i < d; ++i)
+                music[i+offset+a] *= 1f + (float)i*(sustainLevel - 1f)/d;
+            for (int i = 0; i < s; ++i)
+                music[i+offset+a+d] *= sustainLevel;
+            for (int i = 0; i < r; ++i)
+                music[i+offset+numSamples-r] *= sustainLevel - (float)i*sustainLevel/(float)r;
+
+            for (int i = 0; i < numSamples; ++i)
+                music[i+offset] *= (1-0.18f) + 0.18f*Math.cos(2 * Math.PI * i / (sampleRate / 4f));
+        }
+    }
+}